@@ -0,0 +1,124 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.structure.tree.BPlusTree;
+import com.example.demo.structure.tree.BPlusTreeCursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName BPlusTreeBenchmark
+ * @Description: BPlusTree 单项操作的基准测试，按树的大小、阶数、关键字分布组合运行，
+ * 同时报告吞吐量（Throughput）和延迟分位数（SampleTime 的 p50/p90/p99/p99.9）。
+ * 树预先按随机顺序装入 [0, size) 的全部关键字，写操作先删除再插入同一关键字，树的大小保持不变。
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class BPlusTreeBenchmark {
+
+    // 预先生成的操作关键字个数，取2的幂以便用掩码循环
+    static final int KEYS = 1 << 16;
+
+    @Param({"10000", "1000000"})
+    int size;
+
+    @Param({"16", "64", "128", "256"})
+    int order;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+    KeyDistribution distribution;
+
+    private BPlusTree<Integer, Integer> tree;
+
+    // 预先装箱的操作关键字，避免把装箱计入测量
+    private Integer[] keys;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = load(size, order);
+        keys = boxedKeys(distribution, size);
+    }
+
+    // 按随机顺序装入 [0, size)
+    static BPlusTree<Integer, Integer> load(int size, int order) {
+        int[] shuffled = new int[size];
+        for (int i = 0; i < size; i++) {
+            shuffled[i] = i;
+        }
+        Random random = new Random(7);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = temp;
+        }
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        for (int key : shuffled) {
+            tree.insertOrUpdate(key, key);
+        }
+        return tree;
+    }
+
+    static Integer[] boxedKeys(KeyDistribution distribution, int size) {
+        int[] keys = distribution.keys(size, KEYS, new Random(42));
+        Integer[] boxed = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            boxed[i] = keys[i];
+        }
+        return boxed;
+    }
+
+    private Integer nextKey() {
+        return keys[next++ & (KEYS - 1)];
+    }
+
+    @Benchmark
+    public Integer get() {
+        return tree.get(nextKey());
+    }
+
+    @Benchmark
+    public void update() {
+        Integer key = nextKey();
+        tree.insertOrUpdate(key, key);
+    }
+
+    @Benchmark
+    public Integer removeAndInsert() {
+        Integer key = nextKey();
+        Integer value = tree.remove(key);
+        tree.insertOrUpdate(key, key);
+        return value;
+    }
+
+    @Benchmark
+    public int scan100() {
+        Integer from = nextKey();
+        BPlusTreeCursor<Integer, Integer> cursor = tree.scan(from, from + 100);
+        int count = 0;
+        while (cursor.next()) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.structure.tree.BPlusTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName BloomFilterBenchmark
+ * @Description: 查找未命中比例较高时布隆过滤器的效果。树中是 [0, size) 的全部关键字，
+ * 未命中的关键字取自 [size, 2 * size)；bloomBitsPerKey 为0时不启用布隆过滤器
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class BloomFilterBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"64"})
+    int order;
+
+    @Param({"0", "10"})
+    int bloomBitsPerKey;
+
+    @Param({"0", "50", "90"})
+    int missPercent;
+
+    private BPlusTree<Integer, Integer> tree;
+
+    private Integer[] keys;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = BPlusTreeBenchmark.load(size, order);
+        if (bloomBitsPerKey > 0) {
+            tree.enableBloomFilter(bloomBitsPerKey);
+        }
+        Random random = new Random(42);
+        keys = new Integer[BPlusTreeBenchmark.KEYS];
+        for (int i = 0; i < keys.length; i++) {
+            int key = random.nextInt(size);
+            keys[i] = random.nextInt(100) < missPercent ? key + size : key;
+        }
+    }
+
+    @Benchmark
+    public Integer get() {
+        return tree.get(keys[next++ & (BPlusTreeBenchmark.KEYS - 1)]);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.benchmark;
+
+import java.util.Random;
+
+/**
+ * @ClassName KeyDistribution
+ * @Description: 基准测试中操作关键字的分布，关键字取值范围为 [0, size)
+ * 1.SEQUENTIAL：0, 1, 2 ... 依次循环；
+ * 2.RANDOM：均匀随机；
+ * 3.ZIPFIAN：Zipf 分布（theta = 0.99，与 YCSB 相同），排名经过散列打散，热点关键字分散在整棵树中。
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public enum KeyDistribution {
+
+    SEQUENTIAL {
+        @Override
+        int[] keys(int size, int count, Random random) {
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = i % size;
+            }
+            return keys;
+        }
+    },
+
+    RANDOM {
+        @Override
+        int[] keys(int size, int count, Random random) {
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = random.nextInt(size);
+            }
+            return keys;
+        }
+    },
+
+    ZIPFIAN {
+        @Override
+        int[] keys(int size, int count, Random random) {
+            double zetan = zeta(size, THETA);
+            double zeta2 = zeta(2, THETA);
+            double alpha = 1.0 / (1.0 - THETA);
+            double eta = (1 - Math.pow(2.0 / size, 1 - THETA)) / (1 - zeta2 / zetan);
+            int[] keys = new int[count];
+            for (int i = 0; i < count; i++) {
+                double u = random.nextDouble();
+                double uz = u * zetan;
+                long rank;
+                if (uz < 1.0) {
+                    rank = 0;
+                } else if (uz < 1.0 + Math.pow(0.5, THETA)) {
+                    rank = 1;
+                } else {
+                    rank = (long) (size * Math.pow(eta * u - eta + 1, alpha));
+                }
+                keys[i] = (int) Math.floorMod(rank * 0x9E3779B97F4A7C15L, (long) size);
+            }
+            return keys;
+        }
+    };
+
+    private static final double THETA = 0.99;
+
+    /**
+     * 生成 count 个关键字
+     */
+    abstract int[] keys(int size, int count, Random random);
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
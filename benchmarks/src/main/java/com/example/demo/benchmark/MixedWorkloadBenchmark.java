@@ -0,0 +1,78 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.structure.tree.BPlusTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @ClassName MixedWorkloadBenchmark
+ * @Description: BPlusTree 读写混合负载的基准测试，readPercent 为读操作所占的百分比，
+ * 其余为写操作（先删除再插入同一关键字）。操作序列预先生成，每次调用执行一个操作。
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class MixedWorkloadBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"16", "64", "128", "256"})
+    int order;
+
+    @Param({"RANDOM", "ZIPFIAN"})
+    KeyDistribution distribution;
+
+    @Param({"100", "95", "50"})
+    int readPercent;
+
+    private BPlusTree<Integer, Integer> tree;
+
+    private Integer[] keys;
+
+    // 第i个操作是否为读操作
+    private boolean[] reads;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = BPlusTreeBenchmark.load(size, order);
+        keys = BPlusTreeBenchmark.boxedKeys(distribution, size);
+        reads = new boolean[BPlusTreeBenchmark.KEYS];
+        Random random = new Random(43);
+        for (int i = 0; i < reads.length; i++) {
+            reads[i] = random.nextInt(100) < readPercent;
+        }
+    }
+
+    @Benchmark
+    public Integer operation() {
+        int i = next++ & (BPlusTreeBenchmark.KEYS - 1);
+        Integer key = keys[i];
+        if (reads[i]) {
+            return tree.get(key);
+        }
+        Integer value = tree.remove(key);
+        tree.insertOrUpdate(key, key);
+        return value;
+    }
+}
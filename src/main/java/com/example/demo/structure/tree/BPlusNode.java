@@ -5,6 +5,7 @@ import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
 
 /**
  * @ClassName BPlusNode
@@ -15,6 +16,12 @@ import java.util.Map;
 @SuppressWarnings("all")
 public class BPlusNode<K extends Comparable<K>, V> {
 
+    // 节点关键字数不超过该值时顺序查找
+    private static final int LINEAR_SEARCH_THRESHOLD = 8;
+
+    // 延迟删除的墓碑标记，作为被删除关键字的值保留在叶子节点中，直到被整理掉
+    static final Object TOMBSTONE = new Object();
+
     // 是否为叶子节点
     protected boolean isLeaf;
 
@@ -36,6 +43,18 @@ public class BPlusNode<K extends Comparable<K>, V> {
     // 子节点列表
     protected List<BPlusNode<K, V>> children;
 
+    // 非叶子节点子树中的关键字总数，叶子节点直接取 entries.size()
+    protected int count;
+
+    // 非叶子节点缓存的子树聚合结果，仅在 aggregateValid 为 true 时有效
+    protected long aggregate;
+
+    // 子树修改后置为false，查询时重新计算；有效的节点其子节点也都有效
+    protected boolean aggregateValid;
+
+    // 叶子节点中墓碑的个数，不计入 size()
+    protected int tombstones;
+
     public BPlusNode(boolean isLeaf) {
         this.isLeaf = isLeaf;
         entries = new ArrayList();
@@ -51,56 +70,57 @@ public class BPlusNode<K extends Comparable<K>, V> {
     }
 
     public V get(K key) {
-        //如果是叶子节点
-        if (isLeaf) {
-            int low = 0, high = entries.size() - 1, mid;
-            int comp;
-            while (low <= high) {
-                mid = (low + high) / 2;
-                comp = entries.get(mid).getKey().compareTo(key);
-                if (comp == 0) {
-                    return entries.get(mid).getValue();
-                } else if (comp < 0) {
-                    low = mid + 1;
-                } else {
-                    high = mid - 1;
-                }
-            }
-            //未找到所要查询的对象
-            return null;
+        return get(key, null);
+    }
+
+    // 查找，stats不为null时累计查找次数和比较次数
+    V get(K key, BPlusTreeStats stats) {
+        //迭代下降到叶子节点，每层只做一次查找
+        BPlusNode<K, V> node = this;
+        long comparisons = 0;
+        while (!node.isLeaf) {
+            int index = node.childIndex(key);
+            comparisons += searchCost(node.entries.size(), index);
+            node = node.children.get(index);
         }
-        //如果不是叶子节点
-        //如果key小于节点最左边的key，沿第一个子节点继续搜索
-        if (key.compareTo(entries.get(0).getKey()) < 0) {
-            return children.get(0).get(key);
-            //如果key大于等于节点最右边的key，沿最后一个子节点继续搜索
-        } else if (key.compareTo(entries.get(entries.size() - 1).getKey()) >= 0) {
-            return children.get(children.size() - 1).get(key);
-            //否则沿比key大的前一个子节点继续搜索
-        } else {
-            int low = 0, high = entries.size() - 1, mid = 0;
-            int comp;
-            while (low <= high) {
-                mid = (low + high) / 2;
-                comp = entries.get(mid).getKey().compareTo(key);
-                if (comp == 0) {
-                    return children.get(mid + 1).get(key);
-                } else if (comp < 0) {
-                    low = mid + 1;
-                } else {
-                    high = mid - 1;
-                }
+        int index = node.lowerBound(key);
+        if (stats != null) {
+            stats.lookups++;
+            stats.comparisons += comparisons + searchCost(node.entries.size(), index);
+        }
+        if (index < node.entries.size()) {
+            Map.Entry<K, V> entry = node.entries.get(index);
+            if (entry.getKey().compareTo(key) == 0) {
+                V value = entry.getValue();
+                return value == TOMBSTONE ? null : value;
             }
-            return children.get(low).get(key);
         }
+        //未找到所要查询的对象
+        return null;
     }
 
     public void insertOrUpdate(K key, V value, BPlusTree<K, V> tree) {
         //如果是叶子节点
         if (isLeaf) {
-            //不需要分裂，直接插入或更新
-            if (contains(key) != -1 || entries.size() < tree.getOrder()) {
-                insertOrUpdate(key, value);
+            invalidateAggregate(parent);
+            //只查找一次位置，不需要分裂时直接插入或更新
+            int slot = lowerBound(key);
+            boolean exists = slot < entries.size() && entries.get(slot).getKey().compareTo(key) == 0;
+            if (exists && entries.get(slot).getValue() == TOMBSTONE) {
+                //复活被延迟删除的关键字
+                entries.get(slot).setValue(value);
+                revived(tree);
+                addCount(parent, 1);
+                return;
+            }
+            if (exists || entries.size() < tree.getOrder()) {
+                if (exists) {
+                    entries.get(slot).setValue(value);
+                } else {
+                    entries.add(slot, newEntry(key, value, tree));
+                    tree.stats.size++;
+                    addCount(parent, 1);
+                }
                 if (tree.getHeight() == 0) {
                     tree.setHeight(1);
                 }
@@ -110,6 +130,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
             //分裂成左右两个节点
             BPlusNode<K, V> left = new BPlusNode<K, V>(true);
             BPlusNode<K, V> right = new BPlusNode<K, V>(true);
+            //只有最右侧的叶子节点才按追加写入分裂
+            boolean rightmost = next == null;
             //设置链接
             if (previous != null) {
                 previous.next = left;
@@ -129,7 +151,15 @@ public class BPlusNode<K extends Comparable<K>, V> {
             next = null;
 
             //复制原节点关键字到分裂出来的新节点
-            copy2Nodes(key, value, left, right, tree);
+            boolean appended = copy2Nodes(key, value, left, right, rightmost, tree);
+            if (tombstones > 0) {
+                left.countTombstones();
+                right.countTombstones();
+            }
+            tree.stats.size++;
+            addCount(parent, 1);
+            tree.stats.leafSplits++;
+            tree.stats.nodesAdded(0, 1);
 
             //如果不是根节点
             if (parent != null) {
@@ -145,7 +175,7 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 children = null; //删除当前节点的孩子节点引用
 
                 //父节点插入或更新关键字
-                parent.updateInsert(tree);
+                parent.updateInsert(tree, appended);
                 parent = null; //删除当前节点的父节点引用
                 //如果是根节点
             } else {
@@ -157,8 +187,10 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 parent.children.add(left);
                 parent.children.add(right);
                 parent.entries.add(right.entries.get(0));
+                parent.recount();
                 entries = null;
                 children = null;
+                tree.stats.rootAdded();
             }
             return;
 
@@ -192,16 +224,26 @@ public class BPlusNode<K extends Comparable<K>, V> {
         }
     }
 
-    private void copy2Nodes(K key, V value, BPlusNode<K, V> left,
-                            BPlusNode<K, V> right, BPlusTree<K, V> tree) {
+    /**
+     * @param rightmost 当前节点是否为最右侧的叶子节点
+     * @return 是否按追加写入分裂
+     */
+    private boolean copy2Nodes(K key, V value, BPlusNode<K, V> left,
+                               BPlusNode<K, V> right, boolean rightmost, BPlusTree<K, V> tree) {
         //左右两个节点关键字长度
         int leftSize = (tree.getOrder() + 1) / 2 + (tree.getOrder() + 1) % 2;
+        //在最右侧追加写入时原有关键字全部留在左节点，右节点只放新关键字
+        boolean append = rightmost && tree.getSplitPolicy() == BPlusTree.SplitPolicy.APPEND
+                && key.compareTo(entries.get(entries.size() - 1).getKey()) > 0;
+        if (append) {
+            leftSize = entries.size();
+        }
         boolean b = false;//用于记录新元素是否已经被插入
         for (int i = 0; i < entries.size(); i++) {
             if (leftSize != 0) {
                 leftSize--;
                 if (!b && entries.get(i).getKey().compareTo(key) > 0) {
-                    left.entries.add(new SimpleEntry<K, V>(key, value));
+                    left.entries.add(newEntry(key, value, tree));
                     b = true;
                     i--;
                 } else {
@@ -209,7 +251,7 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 }
             } else {
                 if (!b && entries.get(i).getKey().compareTo(key) > 0) {
-                    right.entries.add(new SimpleEntry<K, V>(key, value));
+                    right.entries.add(newEntry(key, value, tree));
                     b = true;
                     i--;
                 } else {
@@ -218,23 +260,33 @@ public class BPlusNode<K extends Comparable<K>, V> {
             }
         }
         if (!b) {
-            right.entries.add(new SimpleEntry<K, V>(key, value));
+            right.entries.add(newEntry(key, value, tree));
         }
+        return append;
     }
 
     /**
      * 插入节点后中间节点的更新
+     *
+     * @param append 子节点是否按追加写入分裂，此时新增的子节点在整棵树该层的最右侧
      */
-    protected void updateInsert(BPlusTree<K, V> tree) {
+    protected void updateInsert(BPlusTree<K, V> tree, boolean append) {
 
         //如果子节点数超出阶数，则需要分裂该节点
         if (children.size() > tree.getOrder()) {
+            tree.stats.internalSplits++;
+            tree.stats.nodesAdded(level(), 1);
             //分裂成左右两个节点
             BPlusNode<K, V> left = new BPlusNode<K, V>(false);
             BPlusNode<K, V> right = new BPlusNode<K, V>(false);
             //左右两个节点子节点的长度
             int leftSize = (tree.getOrder() + 1) / 2 + (tree.getOrder() + 1) % 2;
             int rightSize = (tree.getOrder() + 1) / 2;
+            //追加写入时左节点保留 M - 1 个子节点，右节点只保留最右侧的两个
+            if (append) {
+                leftSize = tree.getOrder() - 1;
+                rightSize = 2;
+            }
             //复制子节点到分裂出来的新节点，并更新关键字
             for (int i = 0; i < leftSize; i++) {
                 left.children.add(children.get(i));
@@ -250,6 +302,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
             for (int i = 0; i < rightSize - 1; i++) {
                 right.entries.add(entries.get(leftSize + i));
             }
+            left.recount();
+            right.recount();
 
             //如果不是根节点
             if (parent != null) {
@@ -265,7 +319,7 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 children = null;
 
                 //父节点更新关键字
-                parent.updateInsert(tree);
+                parent.updateInsert(tree, append);
                 parent = null;
                 //如果是根节点
             } else {
@@ -278,8 +332,10 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 parent.children.add(left);
                 parent.children.add(right);
                 parent.entries.add(entries.get(leftSize - 1));
+                parent.recount();
                 entries = null;
                 children = null;
+                tree.stats.rootAdded();
             }
         }
     }
@@ -298,6 +354,7 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 BPlusNode<K, V> root = children.get(0);
                 tree.setRoot(root);
                 tree.setHeight(tree.getHeight() - 1);
+                tree.stats.rootRemoved();
                 root.parent = null;
                 root.isRoot = true;
                 entries = null;
@@ -321,6 +378,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
                     && previous.children.size() > tree.getOrder() / 2
                     && previous.children.size() > 2) {
                 //前叶子节点末尾节点添加到首位
+                tree.stats.internalBorrows++;
+                previous.aggregateValid = false;
                 int idx = previous.children.size() - 1;
                 BPlusNode<K, V> borrow = previous.children.get(idx);
                 previous.children.remove(idx);
@@ -330,6 +389,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
 
                 entries.add(0, parent.entries.get(preIndex));
                 parent.entries.set(preIndex, previous.entries.remove(idx - 1));
+                previous.count -= borrow.size();
+                count += borrow.size();
                 return;
             }
 
@@ -338,6 +399,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
                     && next.children.size() > tree.getOrder() / 2
                     && next.children.size() > 2) {
                 //后叶子节点首位添加到末尾
+                tree.stats.internalBorrows++;
+                next.aggregateValid = false;
                 BPlusNode<K, V> borrow = next.children.get(0);
                 next.children.remove(0);
                 borrow.parent = this;
@@ -345,6 +408,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 int preIndex = parent.children.indexOf(this);
                 entries.add(parent.entries.get(preIndex));
                 parent.entries.set(preIndex, next.entries.remove(0));
+                next.count -= borrow.size();
+                count += borrow.size();
                 return;
             }
 
@@ -352,6 +417,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
             if (previous != null
                     && (previous.children.size() <= tree.getOrder() / 2
                     || previous.children.size() <= 2)) {
+                tree.stats.internalMerges++;
+                tree.stats.nodeRemoved(level());
                 for (int i = 0; i < children.size(); i++) {
                     previous.children.add(children.get(i));
                 }
@@ -365,6 +432,7 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 }
                 children = previous.children;
                 entries = previous.entries;
+                count += previous.count;
 
                 //更新父节点的关键字列表
                 parent.children.remove(previous);
@@ -386,6 +454,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
             if (next != null
                     && (next.children.size() <= tree.getOrder() / 2
                     || next.children.size() <= 2)) {
+                tree.stats.internalMerges++;
+                tree.stats.nodeRemoved(level());
                 for (int i = 0; i < next.children.size(); i++) {
                     BPlusNode<K, V> child = next.children.get(i);
                     children.add(child);
@@ -396,6 +466,7 @@ public class BPlusNode<K extends Comparable<K>, V> {
                 for (int i = 0; i < next.entries.size(); i++) {
                     entries.add(next.entries.get(i));
                 }
+                count += next.count;
                 parent.children.remove(next);
                 next.parent = null;
                 next.children = null;
@@ -416,9 +487,23 @@ public class BPlusNode<K extends Comparable<K>, V> {
         //如果是叶子节点
         if (isLeaf) {
             //如果不包含该关键字，则直接返回
-            if (contains(key) == -1) {
+            int found = contains(key);
+            if (found == -1) {
                 return null;
             }
+            if (tree.hashIndex != null) {
+                tree.hashIndex.remove(key);
+            }
+            //墓碑已经不计入关键字数，只是物理删除
+            if (entries.get(found).getValue() == TOMBSTONE) {
+                tombstones--;
+                tree.stats.tombstones--;
+            } else {
+                tree.stats.size--;
+                addCount(parent, -1);
+            }
+            //之后的借补、合并会改变路径上节点的子节点
+            invalidateAggregate(parent);
             //如果既是叶子节点又是根节点，直接删除
             if (isRoot) {
                 if (entries.size() == 1) {
@@ -436,8 +521,13 @@ public class BPlusNode<K extends Comparable<K>, V> {
                     && previous.entries.size() > tree.getOrder() / 2
                     && previous.entries.size() > 2) {
                 //添加到首位
+                tree.stats.leafBorrows++;
                 int size = previous.entries.size();
                 entries.add(0, previous.entries.remove(size - 1));
+                if (entries.get(0).getValue() == TOMBSTONE) {
+                    previous.tombstones--;
+                    tombstones++;
+                }
                 int index = parent.children.indexOf(previous);
                 parent.entries.set(index, entries.get(0));
                 return remove(key);
@@ -447,7 +537,12 @@ public class BPlusNode<K extends Comparable<K>, V> {
                     && next.parent == parent
                     && next.entries.size() > tree.getOrder() / 2
                     && next.entries.size() > 2) {
+                tree.stats.leafBorrows++;
                 entries.add(next.entries.remove(0));
+                if (entries.get(entries.size() - 1).getValue() == TOMBSTONE) {
+                    next.tombstones--;
+                    tombstones++;
+                }
                 int index = parent.children.indexOf(this);
                 parent.entries.set(index, next.entries.get(0));
                 return remove(key);
@@ -458,12 +553,15 @@ public class BPlusNode<K extends Comparable<K>, V> {
                     && previous.parent == parent
                     && (previous.entries.size() <= tree.getOrder() / 2
                     || previous.entries.size() <= 2)) {
+                tree.stats.leafMerges++;
+                tree.stats.nodeRemoved(0);
                 V returnValue = remove(key);
                 for (int i = 0; i < entries.size(); i++) {
                     //将当前节点的关键字添加到前节点的末尾
                     previous.entries.add(entries.get(i));
                 }
                 entries = previous.entries;
+                tombstones += previous.tombstones;
                 parent.children.remove(previous);
                 previous.parent = null;
                 previous.entries = null;
@@ -493,11 +591,14 @@ public class BPlusNode<K extends Comparable<K>, V> {
                     && next.parent == parent
                     && (next.entries.size() <= tree.getOrder() / 2
                     || next.entries.size() <= 2)) {
+                tree.stats.leafMerges++;
+                tree.stats.nodeRemoved(0);
                 V returnValue = remove(key);
                 for (int i = 0; i < next.entries.size(); i++) {
                     //从首位开始添加到末尾
                     entries.add(next.entries.get(i));
                 }
+                tombstones += next.tombstones;
                 next.parent = null;
                 next.entries = null;
                 parent.children.remove(next);
@@ -550,44 +651,560 @@ public class BPlusNode<K extends Comparable<K>, V> {
         }
     }
 
-    // 判断当前节点是否包含该关键字
-    protected int contains(K key) {
-        int low = 0, high = entries.size() - 1, mid;
-        int comp;
-        while (low <= high) {
-            mid = (low + high) / 2;
-            comp = entries.get(mid).getKey().compareTo(key);
-            if (comp == 0) {
-                return mid;
-            } else if (comp < 0) {
-                low = mid + 1;
+    /**
+     * 把有序的批量数据 batch[from, to) 合并到当前叶子节点，调用方保证这些关键字都落在该叶子节点的范围内。
+     * 合并后超出阶数时一次分裂成多个节点，而不是逐个插入、逐次分裂
+     *
+     * @return 是否发生了分裂，分裂后调用方记录的下降路径失效
+     */
+    protected boolean insertAll(Map.Entry<K, V>[] batch, int from, int to, BPlusTree<K, V> tree) {
+        if (tree.getHeight() == 0) {
+            tree.setHeight(1);
+        }
+        invalidateAggregate(parent);
+        int size = size();
+        //一定不会溢出时原地插入，避免重建关键字列表
+        if (entries.size() + to - from <= tree.getOrder()) {
+            int index = 0;
+            for (int j = from; j < to; j++) {
+                K key = batch[j].getKey();
+                while (index < entries.size() && entries.get(index).getKey().compareTo(key) < 0) {
+                    index++;
+                }
+                if (index < entries.size() && entries.get(index).getKey().compareTo(key) == 0) {
+                    if (entries.get(index).getValue() == TOMBSTONE) {
+                        revived(tree);
+                    }
+                    entries.get(index).setValue(batch[j].getValue());
+                } else {
+                    entries.add(index, newEntry(key, batch[j].getValue(), tree));
+                    tree.stats.size++;
+                }
+                index++;
+            }
+            addCount(parent, size() - size);
+            return false;
+        }
+        List<Map.Entry<K, V>> merged = new ArrayList<Map.Entry<K, V>>(entries.size() + to - from);
+        int i = 0;
+        for (int j = from; j < to; j++) {
+            K key = batch[j].getKey();
+            while (i < entries.size() && entries.get(i).getKey().compareTo(key) < 0) {
+                merged.add(entries.get(i++));
+            }
+            if (i < entries.size() && entries.get(i).getKey().compareTo(key) == 0) {
+                //已存在的关键字原地更新，非叶子节点共享同一个Entry
+                if (entries.get(i).getValue() == TOMBSTONE) {
+                    revived(tree);
+                }
+                entries.get(i).setValue(batch[j].getValue());
+                merged.add(entries.get(i++));
             } else {
-                high = mid - 1;
+                merged.add(newEntry(key, batch[j].getValue(), tree));
+                tree.stats.size++;
             }
         }
-        return -1;
+        while (i < entries.size()) {
+            merged.add(entries.get(i++));
+        }
+        addCount(parent, merged.size() - tombstones - size);
+        if (merged.size() <= tree.getOrder()) {
+            entries = merged;
+            return false;
+        }
+        //分裂成 ceil(n / M) 个节点，关键字平均分配
+        int count = (merged.size() + tree.getOrder() - 1) / tree.getOrder();
+        tree.stats.leafSplits += count - 1;
+        tree.stats.nodesAdded(0, count - 1);
+        List<BPlusNode<K, V>> siblings = new ArrayList<BPlusNode<K, V>>(count - 1);
+        List<Map.Entry<K, V>> separators = new ArrayList<Map.Entry<K, V>>(count - 1);
+        int start = groupEnd(0, merged.size(), count);
+        entries = new ArrayList<Map.Entry<K, V>>(merged.subList(0, start));
+        boolean hasTombstones = tombstones > 0;
+        if (hasTombstones) {
+            countTombstones();
+        }
+        BPlusNode<K, V> last = this;
+        for (int g = 1; g < count; g++) {
+            int end = groupEnd(start, merged.size(), count - g);
+            BPlusNode<K, V> right = new BPlusNode<K, V>(true);
+            right.entries = new ArrayList<Map.Entry<K, V>>(merged.subList(start, end));
+            if (hasTombstones) {
+                right.countTombstones();
+            }
+            //设置链接
+            right.next = last.next;
+            if (last.next != null) {
+                last.next.previous = right;
+            }
+            last.next = right;
+            right.previous = last;
+            siblings.add(right);
+            separators.add(right.entries.get(0));
+            last = right;
+            start = end;
+        }
+        addSiblings(siblings, separators, tree);
+        return true;
+    }
+
+    /**
+     * 重新装填当前节点下的叶子节点：关键字按顺序平均装入 ceil(n / target) 个叶子节点，
+     * 多出的叶子节点从链表和当前节点中摘除，当前节点子节点不足时按删除的规则借补、合并。
+     * Entry 对象只在叶子节点之间移动，哈希索引和子树计数不需要更新
+     *
+     * @param target 每个叶子节点的目标关键字数
+     * @return 摘除的叶子节点个数
+     */
+    protected int repackLeaves(int target, BPlusTree<K, V> tree) {
+        int total = 0;
+        for (BPlusNode<K, V> child : children) {
+            total += child.entries.size();
+        }
+        int count = Math.max(1, (total + target - 1) / target);
+        if (count >= children.size()) {
+            return 0;
+        }
+        List<Map.Entry<K, V>> all = new ArrayList<Map.Entry<K, V>>(total);
+        for (BPlusNode<K, V> child : children) {
+            all.addAll(child.entries);
+        }
+        BPlusNode<K, V> after = children.get(children.size() - 1).next;
+        int start = 0;
+        for (int g = 0; g < count; g++) {
+            int end = groupEnd(start, total, count - g);
+            BPlusNode<K, V> leaf = children.get(g);
+            leaf.entries = new ArrayList<Map.Entry<K, V>>(all.subList(start, end));
+            if (tree.stats.tombstones > 0) {
+                leaf.countTombstones();
+            }
+            start = end;
+        }
+        int removed = children.size() - count;
+        for (BPlusNode<K, V> leaf : children.subList(count, children.size())) {
+            leaf.parent = null;
+            leaf.entries = null;
+            leaf.previous = null;
+            leaf.next = null;
+            tree.stats.nodeRemoved(0);
+        }
+        tree.stats.leafMerges += removed;
+        children = new ArrayList<BPlusNode<K, V>>(children.subList(0, count));
+        BPlusNode<K, V> last = children.get(count - 1);
+        last.next = after;
+        if (after != null) {
+            after.previous = last;
+        }
+        entries.clear();
+        for (int i = 1; i < count; i++) {
+            entries.add(children.get(i).entries.get(0));
+        }
+        invalidateAggregate(this);
+        updateRemove(tree);
+        return removed;
+    }
+
+    // 把剩余的 [start, size) 平均分成 count 组时第一组的结束位置
+    private static int groupEnd(int start, int size, int count) {
+        return start + (size - start + count - 1) / count;
+    }
+
+    // 把当前节点分裂出的右侧兄弟节点加入父节点，没有父节点时生成新的根节点
+    private void addSiblings(List<BPlusNode<K, V>> siblings, List<Map.Entry<K, V>> separators,
+                             BPlusTree<K, V> tree) {
+        boolean newRoot = parent == null;
+        if (newRoot) {
+            isRoot = false;
+            BPlusNode<K, V> root = new BPlusNode<K, V>(false, true);
+            tree.setRoot(root);
+            if (!isLeaf) {
+                tree.setHeight(tree.getHeight() + 1);
+            }
+            parent = root;
+            root.children.add(this);
+            tree.stats.rootAdded();
+        }
+        int index = parent.children.indexOf(this);
+        for (BPlusNode<K, V> sibling : siblings) {
+            sibling.parent = parent;
+        }
+        parent.children.addAll(index + 1, siblings);
+        parent.entries.addAll(index, separators);
+        if (newRoot) {
+            parent.recount();
+        }
+        parent.updateInsertAll(tree);
     }
 
-    // 插入到当前节点的关键字中
-    protected void insertOrUpdate(K key, V value) {
-        //二叉查找，插入
+    // 批量插入后非叶子节点的更新：子节点数超出阶数时一次分裂成多个节点
+    private void updateInsertAll(BPlusTree<K, V> tree) {
+        if (children.size() <= tree.getOrder()) {
+            return;
+        }
+        List<BPlusNode<K, V>> allChildren = children;
+        List<Map.Entry<K, V>> allEntries = entries;
+        int count = (allChildren.size() + tree.getOrder() - 1) / tree.getOrder();
+        tree.stats.internalSplits += count - 1;
+        tree.stats.nodesAdded(level(), count - 1);
+        List<BPlusNode<K, V>> siblings = new ArrayList<BPlusNode<K, V>>(count - 1);
+        List<Map.Entry<K, V>> separators = new ArrayList<Map.Entry<K, V>>(count - 1);
+        int start = groupEnd(0, allChildren.size(), count);
+        children = new ArrayList<BPlusNode<K, V>>(allChildren.subList(0, start));
+        entries = new ArrayList<Map.Entry<K, V>>(allEntries.subList(0, start - 1));
+        recount();
+        for (int g = 1; g < count; g++) {
+            int end = groupEnd(start, allChildren.size(), count - g);
+            BPlusNode<K, V> right = new BPlusNode<K, V>(false);
+            right.children = new ArrayList<BPlusNode<K, V>>(allChildren.subList(start, end));
+            right.entries = new ArrayList<Map.Entry<K, V>>(allEntries.subList(start, end - 1));
+            //两组之间的关键字上推到父节点
+            separators.add(allEntries.get(start - 1));
+            for (BPlusNode<K, V> child : right.children) {
+                child.parent = right;
+            }
+            right.recount();
+            siblings.add(right);
+            start = end;
+        }
+        addSiblings(siblings, separators, tree);
+    }
+
+    // 子树中的关键字总数
+    protected int size() {
+        return isLeaf ? entries.size() - tombstones : count;
+    }
+
+    // 重新统计叶子节点中的墓碑个数
+    private void countTombstones() {
+        tombstones = 0;
+        for (Map.Entry<K, V> entry : entries) {
+            if (entry.getValue() == TOMBSTONE) {
+                tombstones++;
+            }
+        }
+    }
+
+    // 新建叶子节点中的关键字，启用哈希索引时同时加入索引
+    private static <K extends Comparable<K>, V> Map.Entry<K, V> newEntry(K key, V value, BPlusTree<K, V> tree) {
+        Map.Entry<K, V> entry = new SimpleEntry<K, V>(key, value);
+        if (tree.hashIndex != null) {
+            tree.hashIndex.put(key, entry);
+        }
+        return entry;
+    }
+
+    // 叶子节点中的一个墓碑被新值覆盖，祖先节点的计数由调用方更新
+    private void revived(BPlusTree<K, V> tree) {
+        tombstones--;
+        tree.stats.tombstones--;
+        tree.stats.size++;
+    }
+
+    /**
+     * 读-改-写：只下降一次、在叶子节点中只查找一次位置，用function根据旧值（不存在时为null）计算新值并原地写入。
+     * 新值为null时删除该关键字；只有叶子节点已满、需要插入新关键字时才退回到分裂的插入流程
+     *
+     * @param returnOld true返回旧值，false返回新值
+     */
+    protected V compute(K key, BiFunction<? super K, ? super V, ? extends V> function,
+                        boolean returnOld, BPlusTree<K, V> tree) {
+        BPlusNode<K, V> leaf = findLeaf(key);
+        List<Map.Entry<K, V>> entries = leaf.entries;
+        int index = leaf.lowerBound(key);
+        Map.Entry<K, V> entry = index < entries.size() && entries.get(index).getKey().compareTo(key) == 0
+                ? entries.get(index) : null;
+        V oldValue = entry == null || entry.getValue() == TOMBSTONE ? null : entry.getValue();
+        V newValue = function.apply(key, oldValue);
+        if (newValue == null) {
+            if (oldValue != null) {
+                if (tree.isLazyDelete()) {
+                    leaf.markDeleted(entry, tree);
+                } else {
+                    leaf.remove(key, tree);
+                }
+            }
+        } else if (entry != null) {
+            if (entry.getValue() == TOMBSTONE) {
+                leaf.revived(tree);
+                addCount(leaf.parent, 1);
+            }
+            entry.setValue(newValue);
+            invalidateAggregate(leaf.parent);
+        } else if (entries.size() < tree.getOrder()) {
+            entries.add(index, newEntry(key, newValue, tree));
+            tree.stats.size++;
+            addCount(leaf.parent, 1);
+            invalidateAggregate(leaf.parent);
+            if (tree.getHeight() == 0) {
+                tree.setHeight(1);
+            }
+        } else {
+            leaf.insertOrUpdate(key, newValue, tree);
+        }
+        return returnOld ? oldValue : newValue;
+    }
+
+    /**
+     * 延迟删除：把key的值替换为墓碑，不调整树的结构，由 {@link BPlusTree#compact} 物理删除
+     *
+     * @return 被删除的值，不存在时返回null
+     */
+    protected V markDeleted(K key, BPlusTree<K, V> tree) {
+        BPlusNode<K, V> leaf = findLeaf(key);
+        int index = leaf.lowerBound(key);
+        if (index == leaf.entries.size()) {
+            return null;
+        }
+        Map.Entry<K, V> entry = leaf.entries.get(index);
+        V value = entry.getValue();
+        if (value == TOMBSTONE || entry.getKey().compareTo(key) != 0) {
+            return null;
+        }
+        leaf.markDeleted(entry, tree);
+        return value;
+    }
+
+    // 把当前叶子节点中的entry替换为墓碑
+    private void markDeleted(Map.Entry<K, V> entry, BPlusTree<K, V> tree) {
+        entry.setValue((V) TOMBSTONE);
+        tombstones++;
+        tree.stats.tombstones++;
+        tree.stats.size--;
+        addCount(parent, -1);
+        invalidateAggregate(parent);
+    }
+
+    // 按子节点重新计算子树关键字总数
+    protected void recount() {
+        count = 0;
+        for (BPlusNode<K, V> child : children) {
+            count += child.size();
+        }
+    }
+
+    // 从node开始向上累加各祖先节点的子树关键字总数
+    private static <K extends Comparable<K>, V> void addCount(BPlusNode<K, V> node, int delta) {
+        for (; delta != 0 && node != null; node = node.parent) {
+            node.count += delta;
+        }
+    }
+
+    // 从node开始向上使祖先节点缓存的聚合结果失效，遇到已失效的节点即可停止
+    private static <K extends Comparable<K>, V> void invalidateAggregate(BPlusNode<K, V> node) {
+        for (; node != null && node.aggregateValid; node = node.parent) {
+            node.aggregateValid = false;
+        }
+    }
+
+    // 整个子树的聚合结果，非叶子节点使用或重建缓存
+    protected long aggregate(BPlusTreeAggregation<? super V> aggregation) {
+        if (!isLeaf && aggregateValid) {
+            return aggregate;
+        }
+        long result = aggregation.identity();
+        if (isLeaf) {
+            for (Map.Entry<K, V> entry : entries) {
+                if (entry.getValue() != TOMBSTONE) {
+                    result = aggregation.combine(result, aggregation.map(entry.getValue()));
+                }
+            }
+            return result;
+        }
+        for (BPlusNode<K, V> child : children) {
+            result = aggregation.combine(result, child.aggregate(aggregation));
+        }
+        aggregate = result;
+        aggregateValid = true;
+        return result;
+    }
+
+    /**
+     * 区间 [from, to) 的聚合结果，null表示该方向不设边界。
+     * 完全落在区间内的子树直接使用缓存，只有两条边界路径需要下降
+     */
+    protected long aggregate(K from, K to, BPlusTreeAggregation<? super V> aggregation) {
+        if (from == null && to == null) {
+            return aggregate(aggregation);
+        }
+        if (isLeaf) {
+            long result = aggregation.identity();
+            int i = from == null ? 0 : lowerBound(from);
+            for (; i < entries.size(); i++) {
+                Map.Entry<K, V> entry = entries.get(i);
+                if (to != null && entry.getKey().compareTo(to) >= 0) {
+                    break;
+                }
+                if (entry.getValue() != TOMBSTONE) {
+                    result = aggregation.combine(result, aggregation.map(entry.getValue()));
+                }
+            }
+            return result;
+        }
+        int low = from == null ? 0 : childIndex(from);
+        int high = to == null ? children.size() - 1 : childIndex(to);
+        if (low == high) {
+            return children.get(low).aggregate(from, to, aggregation);
+        }
+        long result = children.get(low).aggregate(from, null, aggregation);
+        for (int i = low + 1; i < high; i++) {
+            result = aggregation.combine(result, children.get(i).aggregate(aggregation));
+        }
+        return aggregation.combine(result, children.get(high).aggregate(null, to, aggregation));
+    }
+
+    /**
+     * 小于key的关键字个数，即key在升序序列中的位置
+     */
+    protected int rank(K key) {
+        BPlusNode<K, V> node = this;
+        int rank = 0;
+        while (!node.isLeaf) {
+            int index = node.childIndex(key);
+            for (int i = 0; i < index; i++) {
+                rank += node.children.get(i).size();
+            }
+            node = node.children.get(index);
+        }
+        int index = node.lowerBound(key);
+        if (node.tombstones > 0) {
+            for (int i = 0; i < index; i++) {
+                if (node.entries.get(i).getValue() == TOMBSTONE) {
+                    rank--;
+                }
+            }
+        }
+        return rank + index;
+    }
+
+    /**
+     * 升序序列中第index个（从0开始）关键字所在的Entry，调用方保证 0 <= index < size()
+     */
+    protected Map.Entry<K, V> select(int index) {
+        BPlusNode<K, V> node = this;
+        while (!node.isLeaf) {
+            int i = 0;
+            BPlusNode<K, V> child = node.children.get(0);
+            while (index >= child.size()) {
+                index -= child.size();
+                child = node.children.get(++i);
+            }
+            node = child;
+        }
+        if (node.tombstones == 0) {
+            return node.entries.get(index);
+        }
+        for (Map.Entry<K, V> entry : node.entries) {
+            if (entry.getValue() != TOMBSTONE && index-- == 0) {
+                return entry;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    // 节点所在的层，叶子层为0
+    protected int level() {
+        int level = 0;
+        BPlusNode<K, V> node = this;
+        while (!node.isLeaf) {
+            node = node.children.get(0);
+            level++;
+        }
+        return level;
+    }
+
+    // childIndex / lowerBound 在n个关键字中查找、结果为index时的比较次数
+    private static int searchCost(int n, int index) {
+        if (n <= LINEAR_SEARCH_THRESHOLD) {
+            return Math.min(index + 1, n);
+        }
+        return 33 - Integer.numberOfLeadingZeros(n - 1);
+    }
+
+    // 从当前节点迭代下降，找到key所在的叶子节点
+    protected BPlusNode<K, V> findLeaf(K key) {
+        BPlusNode<K, V> node = this;
+        while (!node.isLeaf) {
+            node = node.children.get(node.childIndex(key));
+        }
+        return node;
+    }
+
+    // 从当前节点沿最左子节点下降，找到第一个叶子节点
+    protected BPlusNode<K, V> firstLeaf() {
+        BPlusNode<K, V> node = this;
+        while (!node.isLeaf) {
+            node = node.children.get(0);
+        }
+        return node;
+    }
+
+    // 从当前节点沿最右子节点下降，找到最后一个叶子节点
+    protected BPlusNode<K, V> lastLeaf() {
+        BPlusNode<K, V> node = this;
+        while (!node.isLeaf) {
+            node = node.children.get(node.children.size() - 1);
+        }
+        return node;
+    }
+
+    // 非叶子节点中key应沿哪个子节点继续搜索，即关键字中小于等于key的个数
+    protected int childIndex(K key) {
+        List<Map.Entry<K, V>> entries = this.entries;
+        int n = entries.size();
+        //关键字较少时顺序查找，循环没有难以预测的分支
+        if (n <= LINEAR_SEARCH_THRESHOLD) {
+            int i = 0;
+            while (i < n && entries.get(i).getKey().compareTo(key) <= 0) {
+                i++;
+            }
+            return i;
+        }
+        //二分查找，每轮只比较一次，结果用于条件赋值而不是分支跳转
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = entries.get(base + half).getKey().compareTo(key) <= 0 ? base + half : base;
+            n -= half;
+        }
+        return entries.get(base).getKey().compareTo(key) <= 0 ? base + 1 : base;
+    }
+
+    // 第一个大于等于key的关键字位置，不存在时返回entries.size()
+    protected int lowerBound(K key) {
+        List<Map.Entry<K, V>> entries = this.entries;
+        int n = entries.size();
+        if (n <= LINEAR_SEARCH_THRESHOLD) {
+            int i = 0;
+            while (i < n && entries.get(i).getKey().compareTo(key) < 0) {
+                i++;
+            }
+            return i;
+        }
+        int base = 0;
+        while (n > 1) {
+            int half = n >>> 1;
+            base = entries.get(base + half).getKey().compareTo(key) < 0 ? base + half : base;
+            n -= half;
+        }
+        return entries.get(base).getKey().compareTo(key) < 0 ? base + 1 : base;
+    }
+
+    // 判断当前节点是否包含该关键字
+    protected int contains(K key) {
         int low = 0, high = entries.size() - 1, mid;
         int comp;
         while (low <= high) {
             mid = (low + high) / 2;
             comp = entries.get(mid).getKey().compareTo(key);
             if (comp == 0) {
-                entries.get(mid).setValue(value);
-                break;
+                return mid;
             } else if (comp < 0) {
                 low = mid + 1;
             } else {
                 high = mid - 1;
             }
         }
-        if (low > high) {
-            entries.add(low, new SimpleEntry<K, V>(key, value));
-        }
+        return -1;
     }
 
     // 删除节点
@@ -598,7 +1215,8 @@ public class BPlusNode<K extends Comparable<K>, V> {
             mid = (low + high) / 2;
             comp = entries.get(mid).getKey().compareTo(key);
             if (comp == 0) {
-                return entries.remove(mid).getValue();
+                V value = entries.remove(mid).getValue();
+                return value == TOMBSTONE ? null : value;
             } else if (comp < 0) {
                 low = mid + 1;
             } else {
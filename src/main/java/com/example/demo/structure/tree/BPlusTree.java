@@ -1,5 +1,20 @@
 package com.example.demo.structure.tree;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * @ClassName BPlusTree
  * @Description: B+树的定义：
@@ -21,6 +36,22 @@ package com.example.demo.structure.tree;
 @SuppressWarnings("all")
 public class BPlusTree<K extends Comparable<K>, V> {
 
+    /**
+     * 节点分裂策略
+     */
+    public enum SplitPolicy {
+        /**
+         * 从中间分裂，左右各一半，适合随机写入
+         */
+        MIDPOINT,
+        /**
+         * 新关键字大于最右侧叶子节点中所有关键字时，原有关键字全部留在左节点，右节点只放新关键字；
+         * 由此分裂出的最右侧非叶子节点左节点保留 M - 1 个子节点。其他位置的分裂仍从中间分裂，
+         * 顺序追加写入时节点接近装满，随机写入时与 MIDPOINT 相同
+         */
+        APPEND
+    }
+
     // 根节点
     protected BPlusNode<K, V> root;
 
@@ -33,6 +64,39 @@ public class BPlusTree<K extends Comparable<K>, V> {
     // 树高
     protected int height = 0;
 
+    // 结构统计
+    protected final BPlusTreeStats stats = new BPlusTreeStats(this);
+
+    // 可选的布隆过滤器，null表示未启用
+    private BlockedBloomFilter bloomFilter;
+
+    // 布隆过滤器每个关键字占用的位数
+    private int bloomBitsPerKey;
+
+    // 上次重建布隆过滤器之后删除的关键字个数
+    private int bloomRemoves;
+
+    // 可选的哈希索引：关键字到叶子节点中的Entry，null表示未启用
+    HashMap<K, Map.Entry<K, V>> hashIndex;
+
+    // 区间聚合的定义，null表示未启用
+    private BPlusTreeAggregation<? super V> aggregation;
+
+    // 节点分裂策略
+    private SplitPolicy splitPolicy = SplitPolicy.MIDPOINT;
+
+    // 重新装填的进度：下一次从该关键字所在的叶子节点继续，null表示从头开始
+    private K repackFrom;
+
+    // 是否延迟删除
+    private boolean lazyDelete;
+
+    // 整理墓碑的进度：下一次从该关键字所在的叶子节点继续，null表示从头开始
+    private K compactFrom;
+
+    // 墓碑数超过关键字数的该比例时，每次插入顺带整理的墓碑个数
+    private static final int COMPACT_STEP = 2;
+
     public BPlusNode<K, V> getHead() {
         return head;
     }
@@ -65,16 +129,466 @@ public class BPlusTree<K extends Comparable<K>, V> {
         return height;
     }
 
+    public BPlusTreeStats getStats() {
+        return stats;
+    }
+
     public V get(K key) {
-        return root.get(key);
+        if (hashIndex != null) {
+            Map.Entry<K, V> entry = hashIndex.get(key);
+            stats.lookups++;
+            return entry == null || entry.getValue() == BPlusNode.TOMBSTONE ? null : entry.getValue();
+        }
+        if (bloomFilter != null) {
+            //删除过多或关键字超出容量时误判率上升，在查找时按需重建
+            if (bloomRemoves > bloomFilter.capacity() / 4 || root.size() > bloomFilter.capacity()) {
+                rebuildBloomFilter();
+            }
+            if (!bloomFilter.mightContain(key)) {
+                stats.lookups++;
+                stats.bloomNegatives++;
+                return null;
+            }
+        }
+        return root.get(key, stats);
     }
 
     public V remove(K key) {
-        return root.remove(key, this);
+        int size = root.size();
+        V value = lazyDelete ? root.markDeleted(key, this) : root.remove(key, this);
+        if (bloomFilter != null && root.size() < size) {
+            bloomRemoves++;
+        }
+        return value;
     }
 
     public void insertOrUpdate(K key, V value) {
         root.insertOrUpdate(key, value, this);
+        if (bloomFilter != null) {
+            bloomFilter.add(key);
+        }
+        //墓碑超过关键字数的1/4后，由后续的插入分摊整理
+        if (stats.tombstones > 0 && stats.tombstones * 4 > stats.size) {
+            compact(COMPACT_STEP);
+        }
+    }
+
+    /**
+     * 按 {@link Map#compute} 的语义读-改-写：只下降一次、在叶子节点中只查找一次位置，
+     * 用function根据旧值（不存在时为null）计算新值并原地写入，新值为null时删除该关键字
+     *
+     * @return 新值
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> function) {
+        return upsert(key, function, false);
+    }
+
+    /**
+     * 按 {@link Map#merge} 的语义合并：不存在时写入value，存在时写入 function(旧值, value)，结果为null时删除
+     *
+     * @return 新值
+     */
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> function) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        return upsert(key, (k, oldValue) -> oldValue == null ? value : function.apply(oldValue, value), false);
+    }
+
+    /**
+     * 不存在时写入value，只下降一次
+     *
+     * @return 已存在的值，不存在时返回null
+     */
+    public V putIfAbsent(K key, V value) {
+        return upsert(key, (k, oldValue) -> oldValue == null ? value : oldValue, true);
+    }
+
+    private V upsert(K key, BiFunction<? super K, ? super V, ? extends V> function, boolean returnOld) {
+        int size = root.size();
+        V result = root.compute(key, function, returnOld, this);
+        if (bloomFilter != null) {
+            if (root.size() < size) {
+                bloomRemoves++;
+            } else {
+                bloomFilter.add(key);
+            }
+        }
+        if (stats.tombstones > 0 && stats.tombstones * 4 > stats.size) {
+            compact(COMPACT_STEP);
+        }
+        return result;
+    }
+
+    /**
+     * 设置删除模式。延迟删除时 {@link #remove} 只把值替换为墓碑，不借补、不合并节点，
+     * 查找、扫描、计数和聚合都跳过墓碑；墓碑由 {@link #compact} 物理删除，
+     * 墓碑超过关键字数的 1/4 后每次插入也会顺带整理少量墓碑。关闭延迟删除不会清除已有的墓碑
+     */
+    public void setLazyDelete(boolean lazyDelete) {
+        this.lazyDelete = lazyDelete;
+    }
+
+    public boolean isLazyDelete() {
+        return lazyDelete;
+    }
+
+    public SplitPolicy getSplitPolicy() {
+        return splitPolicy;
+    }
+
+    public void setSplitPolicy(SplitPolicy splitPolicy) {
+        this.splitPolicy = splitPolicy;
+    }
+
+    /**
+     * 增量重新装填叶子节点：从上次停止的位置沿叶子节点链表继续，每次处理同一父节点下的一组叶子节点，
+     * 把它们的关键字按目标填充率重新装入尽量少的叶子节点，父节点子节点不足时按删除的规则借补、合并，
+     * 树高可能因此降低。每组的工作量不超过 O(M^2)，可以分多次、穿插在正常读写之间调用
+     *
+     * @param fillFactor 目标填充率，(0, 1]
+     * @param maxGroups  本次最多处理的叶子节点组数
+     * @return 一轮尚未完成时返回true，到达最后一个叶子节点后返回false，下一次调用从头开始
+     */
+    public boolean repack(double fillFactor, int maxGroups) {
+        if (!(fillFactor > 0 && fillFactor <= 1)) {
+            throw new IllegalArgumentException("Illegal fill factor: " + fillFactor);
+        }
+        int target = Math.max((order + 1) / 2, Math.min(order, (int) Math.round(order * fillFactor)));
+        for (int g = 0; g < maxGroups; g++) {
+            if (root.isLeaf) {
+                repackFrom = null;
+                return false;
+            }
+            BPlusNode<K, V> leaf = repackFrom == null ? head : root.findLeaf(repackFrom);
+            BPlusNode<K, V> parent = leaf.parent;
+            //重新装填会摘除叶子节点，先记下下一组的位置
+            BPlusNode<K, V> after = parent.children.get(parent.children.size() - 1).next;
+            parent.repackLeaves(target, this);
+            if (after == null) {
+                repackFrom = null;
+                return false;
+            }
+            repackFrom = after.entries.get(0).getKey();
+        }
+        return true;
+    }
+
+    /**
+     * 增量整理：从上次停止的位置沿叶子节点链表继续，物理删除至多maxTombstones个墓碑，
+     * 不足的叶子节点按正常删除的规则借补、合并。可以在空闲时或定时分批调用
+     *
+     * @return 本次删除的墓碑个数
+     */
+    public int compact(int maxTombstones) {
+        int purged = 0;
+        //最多绕叶子节点链表一圈，防止墓碑计数与树不一致时死循环
+        long leaves = stats.getLeafCount() + 1;
+        List<K> keys = new ArrayList<K>();
+        while (purged < maxTombstones && stats.tombstones > 0 && leaves-- > 0) {
+            BPlusNode<K, V> leaf = compactFrom == null ? head : root.findLeaf(compactFrom);
+            int index = compactFrom == null ? 0 : leaf.lowerBound(compactFrom);
+            keys.clear();
+            for (; index < leaf.entries.size() && purged + keys.size() < maxTombstones; index++) {
+                if (leaf.entries.get(index).getValue() == BPlusNode.TOMBSTONE) {
+                    keys.add(leaf.entries.get(index).getKey());
+                }
+            }
+            //删除会合并节点，先记下继续的位置
+            if (index < leaf.entries.size()) {
+                compactFrom = leaf.entries.get(index).getKey();
+            } else {
+                compactFrom = leaf.next == null ? null : leaf.next.entries.get(0).getKey();
+            }
+            for (K key : keys) {
+                root.remove(key, this);
+            }
+            purged += keys.size();
+            if (!keys.isEmpty()) {
+                leaves++;
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * 启用布隆过滤器，一定不存在的关键字在 {@link #get} 中直接返回，不再从根节点下降查找。
+     * 插入时同步更新；删除后不清除对应的位，删除累计超过容量的 1/4 时在下一次查找中重建。
+     * 过滤器按 hashCode 定位，要求 compareTo 相等的关键字 hashCode 也相等（即 equals 与 compareTo 一致），
+     * 否则与已有关键字 compareTo 相等而 hashCode 不同的关键字（如 BigDecimal 的 1.00 与 1.0）会被误判为一定不存在
+     *
+     * @param bitsPerKey 每个关键字占用的位数，10 位时误判率约 1%
+     */
+    public void enableBloomFilter(int bitsPerKey) {
+        if (bitsPerKey <= 0) {
+            throw new IllegalArgumentException("Illegal bits per key: " + bitsPerKey);
+        }
+        this.bloomBitsPerKey = bitsPerKey;
+        rebuildBloomFilter();
+    }
+
+    public void disableBloomFilter() {
+        bloomFilter = null;
+        bloomRemoves = 0;
+    }
+
+    /**
+     * 启用哈希索引，{@link #get} 不再从根节点下降，O(1) 完成精确查找，范围扫描仍走B+树。
+     * 索引的值是叶子节点中的Entry本身：分裂、借补、合并只在节点之间移动Entry，不需要维护索引，
+     * 只有新建和物理删除关键字时同步更新。代价是每个关键字多一个哈希表项。
+     * 启用后按 equals / hashCode 查找，而树按 compareTo 排序，要求关键字的 equals 与 compareTo 一致
+     * （compareTo 返回0当且仅当 equals 返回true）。BigDecimal 等不满足的类型中，1.0 与 1.00 在树中是同一个关键字，
+     * 在哈希索引中却查不到对方，启用前后 get 的结果会不同，这类关键字不要启用
+     */
+    public void enableHashIndex() {
+        HashMap<K, Map.Entry<K, V>> index = new HashMap<K, Map.Entry<K, V>>(Math.max(16, root.size() * 4 / 3 + 1));
+        for (BPlusNode<K, V> node = head; node != null; node = node.next) {
+            for (Map.Entry<K, V> entry : node.entries) {
+                index.put(entry.getKey(), entry);
+            }
+        }
+        hashIndex = index;
+    }
+
+    public void disableHashIndex() {
+        hashIndex = null;
+    }
+
+    // 按当前关键字数的两倍分配容量，沿叶子节点链表重新添加所有关键字
+    private void rebuildBloomFilter() {
+        BlockedBloomFilter filter = new BlockedBloomFilter(Math.max(64, root.size() * 2), bloomBitsPerKey);
+        for (BPlusNode<K, V> node = head; node != null; node = node.next) {
+            for (Map.Entry<K, V> entry : node.entries) {
+                if (entry.getValue() != BPlusNode.TOMBSTONE) {
+                    filter.add(entry.getKey());
+                }
+            }
+        }
+        bloomFilter = filter;
+        bloomRemoves = 0;
+    }
+
+    /**
+     * 批量插入或更新。先按关键字排序，再从左到右共享一次下降路径：
+     * 落在同一个叶子节点的关键字一次合并进去，每个叶子节点只访问一次，溢出时一次分裂成多个节点
+     */
+    public void putAll(Map<? extends K, ? extends V> batch) {
+        Map.Entry<K, V>[] sorted = batch.entrySet().toArray(new Map.Entry[batch.size()]);
+        Arrays.sort(sorted, (a, b) -> a.getKey().compareTo(b.getKey()));
+        List<BPlusNode<K, V>> path = new ArrayList<BPlusNode<K, V>>();
+        List<K> bounds = new ArrayList<K>();
+        int i = 0;
+        while (i < sorted.length) {
+            BPlusNode<K, V> leaf = seekLeaf(sorted[i].getKey(), path, bounds);
+            K bound = bounds.get(bounds.size() - 1);
+            int end = i + 1;
+            while (end < sorted.length && (bound == null || sorted[end].getKey().compareTo(bound) < 0)) {
+                end++;
+            }
+            //发生分裂后路径上的节点和上界都已改变，下一个关键字从根节点重新下降
+            if (leaf.insertAll(sorted, i, end, this)) {
+                path.clear();
+                bounds.clear();
+            }
+            i = end;
+        }
+        if (bloomFilter != null) {
+            for (Map.Entry<K, V> entry : sorted) {
+                bloomFilter.add(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * 批量查找。先按关键字排序，再共享一次下降路径，每个叶子节点只访问一次
+     *
+     * @return 按关键字升序排列的已找到的关键字和值，不存在的关键字不出现在结果中
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        K[] sorted = keys.toArray((K[]) new Comparable[keys.size()]);
+        Arrays.sort(sorted);
+        Map<K, V> result = new LinkedHashMap<K, V>();
+        List<BPlusNode<K, V>> path = new ArrayList<BPlusNode<K, V>>();
+        List<K> bounds = new ArrayList<K>();
+        BPlusNode<K, V> leaf = null;
+        int index = 0;
+        for (K key : sorted) {
+            K bound = bounds.isEmpty() ? null : bounds.get(bounds.size() - 1);
+            if (leaf == null || (bound != null && key.compareTo(bound) >= 0)) {
+                leaf = seekLeaf(key, path, bounds);
+                index = 0;
+            }
+            //同一叶子节点内关键字递增，从上一次的位置继续向后查找
+            List<Map.Entry<K, V>> entries = leaf.entries;
+            while (index < entries.size() && entries.get(index).getKey().compareTo(key) < 0) {
+                index++;
+            }
+            if (index < entries.size() && entries.get(index).getKey().compareTo(key) == 0
+                    && entries.get(index).getValue() != BPlusNode.TOMBSTONE) {
+                result.put(key, entries.get(index).getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 定位key所在的叶子节点。path 和 bounds 记录上一次的下降路径及每层节点的关键字上界（不含，null表示无上界），
+     * 先回退到上界大于key的最低层，再从那里向下查找，相邻的关键字只需重新查找路径的下半部分
+     */
+    private BPlusNode<K, V> seekLeaf(K key, List<BPlusNode<K, V>> path, List<K> bounds) {
+        while (!bounds.isEmpty()) {
+            K bound = bounds.get(bounds.size() - 1);
+            if (bound == null || key.compareTo(bound) < 0) {
+                break;
+            }
+            path.remove(path.size() - 1);
+            bounds.remove(bounds.size() - 1);
+        }
+        if (path.isEmpty()) {
+            path.add(root);
+            bounds.add(null);
+        }
+        BPlusNode<K, V> node = path.get(path.size() - 1);
+        K bound = bounds.get(bounds.size() - 1);
+        while (!node.isLeaf) {
+            int index = node.childIndex(key);
+            if (index < node.entries.size()) {
+                bound = node.entries.get(index).getKey();
+            }
+            node = node.children.get(index);
+            path.add(node);
+            bounds.add(bound);
+        }
+        return node;
+    }
+
+    /**
+     * 关键字总数，由非叶子节点维护的子树计数得到，O(1)
+     */
+    public int size() {
+        return root.size();
+    }
+
+    /**
+     * 小于key的关键字个数；key存在时即为其在升序序列中的下标（从0开始）。O(log n)
+     */
+    public int rank(K key) {
+        return root.rank(key);
+    }
+
+    /**
+     * 升序序列中下标为index（从0开始）的关键字和值，用于深分页：先定位起点，再从该关键字开始扫描。O(log n)
+     *
+     * @throws IndexOutOfBoundsException index不在 [0, size()) 内
+     */
+    public Map.Entry<K, V> select(int index) {
+        if (index < 0 || index >= root.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + root.size());
+        }
+        Map.Entry<K, V> entry = root.select(index);
+        return new AbstractMap.SimpleImmutableEntry<K, V>(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * 区间 [from, to) 内的关键字个数，null表示该方向不设边界。O(log n)
+     */
+    public int countRange(K from, K to) {
+        int low = from == null ? 0 : root.rank(from);
+        int high = to == null ? root.size() : root.rank(to);
+        return Math.max(0, high - low);
+    }
+
+    /**
+     * 设置区间聚合，非叶子节点缓存的聚合结果全部失效，在下一次查询时重新计算。
+     * 修改只使所在路径上的缓存失效，查询时按需重建，未查询时插入和删除没有额外开销
+     *
+     * @param aggregation 聚合定义，null表示关闭
+     */
+    public void setAggregation(BPlusTreeAggregation<? super V> aggregation) {
+        this.aggregation = aggregation;
+        invalidateAggregates(root);
+    }
+
+    public BPlusTreeAggregation<? super V> getAggregation() {
+        return aggregation;
+    }
+
+    private void invalidateAggregates(BPlusNode<K, V> node) {
+        if (!node.isLeaf) {
+            node.aggregateValid = false;
+            for (BPlusNode<K, V> child : node.children) {
+                invalidateAggregates(child);
+            }
+        }
+    }
+
+    /**
+     * 区间 [from, to) 内所有值的聚合结果，null表示该方向不设边界，区间为空时返回单位元。O(log n)
+     *
+     * @throws IllegalStateException 未设置聚合
+     */
+    public long aggregate(K from, K to) {
+        if (aggregation == null) {
+            throw new IllegalStateException("aggregation is not set");
+        }
+        if (from != null && to != null && from.compareTo(to) >= 0) {
+            return aggregation.identity();
+        }
+        return root.aggregate(from, to, aggregation);
+    }
+
+    /**
+     * 区间 [from, to) 的并行流，null表示该方向不设边界。按非叶子节点的子节点边界切分，流中元素按关键字升序。
+     * 流的元素是关键字和值的副本；遍历期间树不能被修改
+     */
+    public Stream<Map.Entry<K, V>> parallelStream(K from, K to) {
+        return parallelStream(from, to, (key, value) -> true, AbstractMap.SimpleImmutableEntry::new);
+    }
+
+    /**
+     * 区间 [from, to) 的并行流，在叶子节点内先用filter过滤、再用projection投影，
+     * 不满足条件的关键字不产生任何对象
+     *
+     * @param filter     关键字和值的过滤条件
+     * @param projection 把满足条件的关键字和值转换为流的元素
+     */
+    public <R> Stream<R> parallelStream(K from, K to, BiPredicate<? super K, ? super V> filter,
+                                        BiFunction<? super K, ? super V, ? extends R> projection) {
+        if (from != null && to != null && from.compareTo(to) >= 0) {
+            return Stream.<R>empty().parallel();
+        }
+        return StreamSupport.stream(new BPlusTreeSpliterator<K, V, R>(root, from, to, filter, projection), true);
+    }
+
+    /**
+     * 按关键字升序扫描区间 [from, to)，null表示该方向不设边界
+     */
+    public BPlusTreeCursor<K, V> scan(K from, K to) {
+        return new BPlusTreeCursor<K, V>(this, false).seek(from, to);
+    }
+
+    /**
+     * 按关键字降序扫描区间 [from, to)，null表示该方向不设边界
+     */
+    public BPlusTreeCursor<K, V> scanDescending(K from, K to) {
+        return new BPlusTreeCursor<K, V>(this, true).seek(from, to);
+    }
+
+    /**
+     * 把整棵树写入压缩、带校验的快照文件，格式见 {@link BPlusTreeFile}
+     *
+     * @return 写入的关键字个数
+     */
+    public long save(Path path, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        return BPlusTreeFile.save(this, path, keyCodec, valueCodec);
+    }
+
+    /**
+     * 从 {@link #save} 写出的快照文件批量构建B+树
+     */
+    public static <K extends Comparable<K>, V> BPlusTree<K, V> load(Path path, int order,
+                                                                   Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        return BPlusTreeFile.load(path, order, keyCodec, valueCodec);
     }
 
     public BPlusTree(int order) {
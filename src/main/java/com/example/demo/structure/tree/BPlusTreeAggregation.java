@@ -0,0 +1,66 @@
+package com.example.demo.structure.tree;
+
+import java.util.function.LongBinaryOperator;
+import java.util.function.ToLongFunction;
+
+/**
+ * @ClassName BPlusTreeAggregation
+ * @Description: B+树区间聚合的定义，是一个幺半群：
+ * 1.mapper 把每个值映射为 long；
+ * 2.operator 满足结合律，identity 是它的单位元（operator(identity, x) == x）。
+ * 非叶子节点缓存子树的聚合结果，区间查询只需合并 O(log n) 个部分结果，见 {@link BPlusTree#aggregate}
+ *
+ * 用法：
+ * <pre>
+ *     tree.setAggregation(BPlusTreeAggregation.sum(Long::longValue));
+ *     long total = tree.aggregate(from, to);
+ * </pre>
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public final class BPlusTreeAggregation<V> {
+
+    private final LongBinaryOperator operator;
+
+    private final long identity;
+
+    private final ToLongFunction<? super V> mapper;
+
+    public BPlusTreeAggregation(LongBinaryOperator operator, long identity, ToLongFunction<? super V> mapper) {
+        if (operator == null || mapper == null) {
+            throw new NullPointerException();
+        }
+        this.operator = operator;
+        this.identity = identity;
+        this.mapper = mapper;
+    }
+
+    public static <V> BPlusTreeAggregation<V> sum(ToLongFunction<? super V> mapper) {
+        return new BPlusTreeAggregation<V>(Long::sum, 0, mapper);
+    }
+
+    public static <V> BPlusTreeAggregation<V> min(ToLongFunction<? super V> mapper) {
+        return new BPlusTreeAggregation<V>(Math::min, Long.MAX_VALUE, mapper);
+    }
+
+    public static <V> BPlusTreeAggregation<V> max(ToLongFunction<? super V> mapper) {
+        return new BPlusTreeAggregation<V>(Math::max, Long.MIN_VALUE, mapper);
+    }
+
+    public static <V> BPlusTreeAggregation<V> count() {
+        return new BPlusTreeAggregation<V>(Long::sum, 0, value -> 1L);
+    }
+
+    public long identity() {
+        return identity;
+    }
+
+    long combine(long left, long right) {
+        return operator.applyAsLong(left, right);
+    }
+
+    long map(V value) {
+        return mapper.applyAsLong(value);
+    }
+}
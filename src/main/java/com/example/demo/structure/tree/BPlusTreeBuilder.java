@@ -0,0 +1,203 @@
+package com.example.demo.structure.tree;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * @ClassName BPlusTreeBuilder
+ * @Description: 从已排序数据自底向上批量构建B+树
+ * 1.按填充因子把有序数据依次装入叶子节点，并链接 previous / next；
+ * 2.逐层为下一层节点生成父节点，关键字取右侧子树最左叶子节点的第一个关键字；
+ * 3.每层最后一个节点不足最小容量时，与前一个节点合并或平分，保证满足B+树定义。
+ * 整个过程不发生任何分裂，时间复杂度 O(n)。
+ *
+ * 用法：
+ * <pre>
+ *     BPlusTree<K, V> tree = new BPlusTreeBuilder<K, V>(order).fillFactor(0.9).build(sortedIterator);
+ * </pre>
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public class BPlusTreeBuilder<K extends Comparable<K>, V> {
+
+    // 阶数，M值
+    private final int order;
+
+    // 节点填充因子，(0, 1]
+    private double fillFactor = 1.0;
+
+    public BPlusTreeBuilder(int order) {
+        if (order < 3) {
+            throw new IllegalArgumentException("order must be greater than 2");
+        }
+        this.order = order;
+    }
+
+    /**
+     * 设置节点填充因子，节点实际装入数量不会低于B+树定义的最小值
+     *
+     * @param fillFactor 填充因子，取值 (0, 1]
+     */
+    public BPlusTreeBuilder<K, V> fillFactor(double fillFactor) {
+        if (!(fillFactor > 0 && fillFactor <= 1)) {
+            throw new IllegalArgumentException("Illegal fill factor: " + fillFactor);
+        }
+        this.fillFactor = fillFactor;
+        return this;
+    }
+
+    public BPlusTree<K, V> build(Stream<? extends Map.Entry<? extends K, ? extends V>> sorted) {
+        return build(sorted.iterator());
+    }
+
+    /**
+     * 从按关键字严格升序排列的数据构建B+树
+     *
+     * @throws IllegalArgumentException 关键字未严格升序
+     */
+    public BPlusTree<K, V> build(Iterator<? extends Map.Entry<? extends K, ? extends V>> sorted) {
+        BPlusTree<K, V> tree = new BPlusTree<K, V>(order);
+        List<BPlusNode<K, V>> level = buildLeaves(sorted);
+        if (level.isEmpty()) {
+            return tree;
+        }
+        BPlusNode<K, V> head = level.get(0);
+        int height = 1;
+        while (level.size() > 1) {
+            level = buildParents(level);
+            height++;
+        }
+        BPlusNode<K, V> root = level.get(0);
+        root.isRoot = true;
+        tree.setRoot(root);
+        tree.setHead(head);
+        tree.setHeight(height == 1 ? 1 : height - 1);
+        tree.getStats().recount();
+        return tree;
+    }
+
+    private List<BPlusNode<K, V>> buildLeaves(Iterator<? extends Map.Entry<? extends K, ? extends V>> sorted) {
+        int capacity = capacity(leafMin());
+        List<BPlusNode<K, V>> leaves = new ArrayList<BPlusNode<K, V>>();
+        BPlusNode<K, V> leaf = null;
+        K last = null;
+        while (sorted.hasNext()) {
+            Map.Entry<? extends K, ? extends V> entry = sorted.next();
+            K key = entry.getKey();
+            if (last != null && last.compareTo(key) >= 0) {
+                throw new IllegalArgumentException("keys must be strictly ascending: " + last + ", " + key);
+            }
+            last = key;
+            if (leaf == null || leaf.entries.size() == capacity) {
+                BPlusNode<K, V> next = new BPlusNode<K, V>(true);
+                if (leaf != null) {
+                    leaf.next = next;
+                    next.previous = leaf;
+                }
+                leaf = next;
+                leaves.add(leaf);
+            }
+            leaf.entries.add(new SimpleEntry<K, V>(key, entry.getValue()));
+        }
+        if (leaves.size() > 1 && leaf.entries.size() < leafMin()) {
+            rebalanceLastLeaves(leaves);
+        }
+        return leaves;
+    }
+
+    // 最后一个叶子节点不足时，与前一个叶子节点合并或平分
+    private void rebalanceLastLeaves(List<BPlusNode<K, V>> leaves) {
+        BPlusNode<K, V> last = leaves.get(leaves.size() - 1);
+        BPlusNode<K, V> previous = last.previous;
+        List<Map.Entry<K, V>> all = new ArrayList<Map.Entry<K, V>>(previous.entries);
+        all.addAll(last.entries);
+        previous.entries.clear();
+        last.entries.clear();
+        if (all.size() <= order) {
+            previous.entries.addAll(all);
+            previous.next = null;
+            last.previous = null;
+            leaves.remove(leaves.size() - 1);
+            return;
+        }
+        int leftSize = all.size() / 2 + all.size() % 2;
+        previous.entries.addAll(all.subList(0, leftSize));
+        last.entries.addAll(all.subList(leftSize, all.size()));
+    }
+
+    private List<BPlusNode<K, V>> buildParents(List<BPlusNode<K, V>> children) {
+        int capacity = capacity(internalMin());
+        List<BPlusNode<K, V>> parents = new ArrayList<BPlusNode<K, V>>();
+        BPlusNode<K, V> parent = null;
+        for (BPlusNode<K, V> child : children) {
+            if (parent == null || parent.children.size() == capacity) {
+                parent = new BPlusNode<K, V>(false);
+                parents.add(parent);
+            }
+            addChild(parent, child);
+        }
+        if (parents.size() > 1 && parent.children.size() < internalMin()) {
+            rebalanceLastParents(parents);
+        }
+        return parents;
+    }
+
+    // 最后一个父节点不足时，与前一个父节点合并或平分子节点
+    private void rebalanceLastParents(List<BPlusNode<K, V>> parents) {
+        BPlusNode<K, V> last = parents.get(parents.size() - 1);
+        BPlusNode<K, V> previous = parents.get(parents.size() - 2);
+        List<BPlusNode<K, V>> all = new ArrayList<BPlusNode<K, V>>(previous.children);
+        all.addAll(last.children);
+        previous.children.clear();
+        previous.entries.clear();
+        last.children.clear();
+        last.entries.clear();
+        previous.count = 0;
+        last.count = 0;
+        int leftSize = all.size() <= order ? all.size() : all.size() / 2 + all.size() % 2;
+        for (int i = 0; i < all.size(); i++) {
+            addChild(i < leftSize ? previous : last, all.get(i));
+        }
+        if (last.children.isEmpty()) {
+            parents.remove(parents.size() - 1);
+        }
+    }
+
+    // 追加子节点，非首个子节点时以该子树最小关键字作为父节点的关键字
+    private void addChild(BPlusNode<K, V> parent, BPlusNode<K, V> child) {
+        if (!parent.children.isEmpty()) {
+            parent.entries.add(firstEntry(child));
+        }
+        parent.children.add(child);
+        parent.count += child.size();
+        child.parent = parent;
+    }
+
+    private Map.Entry<K, V> firstEntry(BPlusNode<K, V> node) {
+        while (!node.isLeaf) {
+            node = node.children.get(0);
+        }
+        return node.entries.get(0);
+    }
+
+    // 按填充因子计算每个节点装入的数量，不低于最小值、不超过阶数
+    private int capacity(int min) {
+        int capacity = (int) Math.round(order * fillFactor);
+        return Math.max(min, Math.min(order, capacity));
+    }
+
+    // 叶子节点最少关键字数，与分裂后右节点的大小一致
+    private int leafMin() {
+        return (order + 1) / 2;
+    }
+
+    // 非叶子节点最少子节点数
+    private int internalMin() {
+        return Math.max(2, (order + 1) / 2);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.demo.structure.tree;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * @ClassName BPlusTreeCursor
+ * @Description: B+树范围扫描游标
+ * 只在定位起始叶子节点时从根节点下降一次，之后沿叶子节点的 next / previous 链表移动。
+ * 游标本身就是当前行的可变持有者，每前进一步不分配任何对象；
+ * 通过 {@link #seek(Comparable, Comparable)} 可以复用同一个游标执行下一次扫描。
+ *
+ * 用法：
+ * <pre>
+ *     BPlusTreeCursor<K, V> cursor = tree.scan(from, to);
+ *     while (cursor.next()) {
+ *         cursor.getKey();
+ *         cursor.getValue();
+ *     }
+ * </pre>
+ *
+ * 扫描区间为 [from, to)，from 或 to 为 null 时表示该方向不设边界。
+ * 扫描期间不能修改树，否则结果未定义。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public class BPlusTreeCursor<K extends Comparable<K>, V> {
+
+    private final BPlusTree<K, V> tree;
+
+    // 是否降序扫描
+    private final boolean descending;
+
+    // 区间下界（包含），null表示无下界
+    private K from;
+
+    // 区间上界（不包含），null表示无上界
+    private K to;
+
+    // 当前所在叶子节点，为null表示扫描结束
+    private BPlusNode<K, V> leaf;
+
+    // 下一个要读取的关键字在叶子节点中的位置
+    private int index;
+
+    // 当前行
+    private Map.Entry<K, V> current;
+
+    BPlusTreeCursor(BPlusTree<K, V> tree, boolean descending) {
+        this.tree = tree;
+        this.descending = descending;
+    }
+
+    /**
+     * 将游标重新定位到区间 [from, to) 的起点，可以复用游标进行多次扫描
+     *
+     * @return 当前游标
+     */
+    public BPlusTreeCursor<K, V> seek(K from, K to) {
+        this.from = from;
+        this.to = to;
+        this.current = null;
+        BPlusNode<K, V> root = tree.getRoot();
+        if (descending) {
+            leaf = to == null ? root.lastLeaf() : root.findLeaf(to);
+            index = to == null ? leaf.entries.size() - 1 : leaf.lowerBound(to) - 1;
+        } else {
+            leaf = from == null ? tree.getHead() : root.findLeaf(from);
+            index = from == null ? 0 : leaf.lowerBound(from);
+        }
+        return this;
+    }
+
+    /**
+     * 前进到下一行
+     *
+     * @return 存在下一行时返回true，扫描结束返回false
+     */
+    public boolean next() {
+        //跳过延迟删除留下的墓碑
+        boolean found;
+        do {
+            found = descending ? previousEntry() : nextEntry();
+        } while (found && current.getValue() == BPlusNode.TOMBSTONE);
+        return found;
+    }
+
+    private boolean nextEntry() {
+        while (leaf != null && index >= leaf.entries.size()) {
+            leaf = leaf.next;
+            index = 0;
+        }
+        if (leaf == null) {
+            current = null;
+            return false;
+        }
+        Map.Entry<K, V> entry = leaf.entries.get(index);
+        if (to != null && entry.getKey().compareTo(to) >= 0) {
+            leaf = null;
+            current = null;
+            return false;
+        }
+        index++;
+        current = entry;
+        return true;
+    }
+
+    private boolean previousEntry() {
+        while (leaf != null && index < 0) {
+            leaf = leaf.previous;
+            if (leaf != null) {
+                index = leaf.entries.size() - 1;
+            }
+        }
+        if (leaf == null) {
+            current = null;
+            return false;
+        }
+        Map.Entry<K, V> entry = leaf.entries.get(index);
+        if (from != null && entry.getKey().compareTo(from) < 0) {
+            leaf = null;
+            current = null;
+            return false;
+        }
+        index--;
+        current = entry;
+        return true;
+    }
+
+    /**
+     * @return 当前行的关键字
+     * @throws NoSuchElementException 尚未调用next()或扫描已结束
+     */
+    public K getKey() {
+        return currentEntry().getKey();
+    }
+
+    /**
+     * @return 当前行的值
+     * @throws NoSuchElementException 尚未调用next()或扫描已结束
+     */
+    public V getValue() {
+        return currentEntry().getValue();
+    }
+
+    private Map.Entry<K, V> currentEntry() {
+        if (current == null) {
+            throw new NoSuchElementException();
+        }
+        return current;
+    }
+}
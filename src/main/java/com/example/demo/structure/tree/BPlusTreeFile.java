@@ -0,0 +1,392 @@
+package com.example.demo.structure.tree;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @ClassName BPlusTreeFile
+ * @Description: B+树的紧凑二进制快照文件
+ * 1.{@link #save} 沿叶子链表按关键字顺序写出所有数据，每约 16KB 原始数据压缩成一个数据块，
+ *   每块带 CRC32 校验，文件末尾是稀疏索引（每块的首关键字和偏移）；先写临时文件、force 后原子替换；
+ * 2.{@link #load} 内存映射文件，逐块解压校验后交给 {@link BPlusTreeBuilder} 自底向上构建，不发生任何分裂；
+ * 3.{@link Reader} 不构建树，直接在映射的文件上查找：二分查找稀疏索引定位数据块，解压后在块内二分查找。
+ *
+ * 文件格式：
+ * <pre>
+ *     [magic:4][version:4][keySize:4][valueSize:4]                        文件头
+ *     ([compressedLength:4][entries:4][crc32:4][deflate data]) * blocks   数据块，crc32 针对解压后的数据
+ *     ([firstKey][offset:8][entries:4]) * blocks                          稀疏索引
+ *     [indexOffset:8][blocks:4][count:8][indexCrc32:4][magic:4]           文件尾
+ * </pre>
+ * 文件整体映射到一个 MappedByteBuffer，大小不能超过 2GB。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public class BPlusTreeFile {
+
+    // 魔数 "BPSF"
+    private static final int MAGIC = 0x42505346;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 * 4;
+
+    private static final int BLOCK_HEADER_SIZE = 4 * 3;
+
+    private static final int FOOTER_SIZE = 8 + 4 + 8 + 4 + 4;
+
+    // 每个数据块的原始数据大小
+    private static final int BLOCK_BYTES = 16 * 1024;
+
+    private BPlusTreeFile() {
+    }
+
+    /**
+     * 把整棵树写入快照文件
+     *
+     * @return 写入的关键字个数
+     */
+    public static <K extends Comparable<K>, V> long save(BPlusTree<K, V> tree, Path path,
+                                                        Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        int entrySize = keyCodec.size() + valueCodec.size();
+        int blockEntries = Math.max(1, BLOCK_BYTES / entrySize);
+        ByteBuffer block = ByteBuffer.allocate(blockEntries * entrySize);
+        // 稀疏索引先在内存中累积，数据块写完后再写出
+        ByteBuffer index = ByteBuffer.allocate(256 * (keyCodec.size() + 12));
+        byte[] compressed = new byte[block.capacity() + block.capacity() / 10 + 64];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        CRC32 crc = new CRC32();
+        long count = 0;
+        int blocks = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(keyCodec.size());
+            out.writeInt(valueCodec.size());
+            long offset = HEADER_SIZE;
+            BPlusTreeCursor<K, V> cursor = tree.scan(null, null);
+            boolean more = cursor.next();
+            while (more) {
+                block.clear();
+                K firstKey = cursor.getKey();
+                int entries = 0;
+                do {
+                    keyCodec.encode(block, cursor.getKey());
+                    valueCodec.encode(block, cursor.getValue());
+                    entries++;
+                    more = cursor.next();
+                } while (more && entries < blockEntries);
+                crc.reset();
+                crc.update(block.array(), 0, block.position());
+                deflater.reset();
+                deflater.setInput(block.array(), 0, block.position());
+                deflater.finish();
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    length += deflater.deflate(compressed, length, compressed.length - length);
+                }
+                out.writeInt(length);
+                out.writeInt(entries);
+                out.writeInt((int) crc.getValue());
+                out.write(compressed, 0, length);
+                if (index.remaining() < keyCodec.size() + 12) {
+                    ByteBuffer larger = ByteBuffer.allocate(index.capacity() * 2);
+                    index.flip();
+                    larger.put(index);
+                    index = larger;
+                }
+                keyCodec.encode(index, firstKey);
+                index.putLong(offset);
+                index.putInt(entries);
+                offset += BLOCK_HEADER_SIZE + length;
+                count += entries;
+                blocks++;
+            }
+            crc.reset();
+            crc.update(index.array(), 0, index.position());
+            out.write(index.array(), 0, index.position());
+            out.writeLong(offset);
+            out.writeInt(blocks);
+            out.writeLong(count);
+            out.writeInt((int) crc.getValue());
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * 内存映射快照文件，批量构建B+树
+     */
+    public static <K extends Comparable<K>, V> BPlusTree<K, V> load(Path path, int order,
+                                                                   Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        try (Reader<K, V> reader = new Reader<K, V>(path, keyCodec, valueCodec)) {
+            return new BPlusTreeBuilder<K, V>(order).build(reader.iterator());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 直接在映射的快照文件上查找，不构建树。最近解压的一个数据块会被缓存，非线程安全，
+     * 遍历 {@link #iterator()} 期间不能调用 {@link #get}
+     */
+    @SuppressWarnings("unchecked")
+    public static class Reader<K extends Comparable<K>, V> implements Closeable {
+
+        private final Path path;
+
+        private final Codec<K> keyCodec;
+
+        private final Codec<V> valueCodec;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer mapped;
+
+        // 每个数据块的首关键字、偏移、关键字个数
+        private final K[] firstKeys;
+
+        private final long[] offsets;
+
+        private final int[] entries;
+
+        private final long count;
+
+        private final Inflater inflater = new Inflater();
+
+        private final CRC32 crc = new CRC32();
+
+        private byte[] compressed = new byte[0];
+
+        // 缓存的解压后数据块
+        private ByteBuffer block;
+
+        private int cachedBlock = -1;
+
+        public Reader(Path path, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+            this.path = path;
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < HEADER_SIZE + FOOTER_SIZE) {
+                    throw new IOException("not a B+ tree file: " + path);
+                }
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("file larger than 2GB cannot be mapped: " + path);
+                }
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (mapped.getInt(0) != MAGIC || mapped.getInt((int) size - 4) != MAGIC) {
+                    throw new IOException("not a B+ tree file: " + path);
+                }
+                if (mapped.getInt(4) != VERSION) {
+                    throw new IOException("unsupported version " + mapped.getInt(4) + ": " + path);
+                }
+                if (mapped.getInt(8) != keyCodec.size() || mapped.getInt(12) != valueCodec.size()) {
+                    throw new IOException("codec size mismatch: " + path);
+                }
+                int footer = (int) size - FOOTER_SIZE;
+                long indexOffset = mapped.getLong(footer);
+                int blocks = mapped.getInt(footer + 8);
+                this.count = mapped.getLong(footer + 12);
+                int indexCrc = mapped.getInt(footer + 20);
+                int indexSize = blocks * (keyCodec.size() + 12);
+                if (indexOffset + indexSize != footer) {
+                    throw new IOException("corrupt index: " + path);
+                }
+                ByteBuffer index = mapped.duplicate();
+                index.position((int) indexOffset);
+                index.limit(footer);
+                byte[] indexBytes = new byte[indexSize];
+                index.get(indexBytes);
+                crc.update(indexBytes, 0, indexSize);
+                if ((int) crc.getValue() != indexCrc) {
+                    throw new IOException("index checksum mismatch: " + path);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(indexBytes);
+                this.firstKeys = (K[]) new Comparable[blocks];
+                this.offsets = new long[blocks];
+                this.entries = new int[blocks];
+                long total = 0;
+                for (int i = 0; i < blocks; i++) {
+                    firstKeys[i] = keyCodec.decode(buffer);
+                    offsets[i] = buffer.getLong();
+                    entries[i] = buffer.getInt();
+                    total += entries[i];
+                }
+                if (total != count) {
+                    throw new IOException("corrupt footer: " + path);
+                }
+            } catch (IOException | RuntimeException e) {
+                inflater.end();
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return 文件中的关键字个数
+         */
+        public long size() {
+            return count;
+        }
+
+        public V get(K key) throws IOException {
+            //最后一个首关键字小于等于key的数据块
+            int low = 0, high = firstKeys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (firstKeys[mid].compareTo(key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            int blockIndex = high;
+            if (blockIndex < 0) {
+                return null;
+            }
+            ByteBuffer block = block(blockIndex);
+            int entrySize = keyCodec.size() + valueCodec.size();
+            low = 0;
+            high = entries[blockIndex] - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                block.position(mid * entrySize);
+                int comp = keyCodec.decode(block).compareTo(key);
+                if (comp == 0) {
+                    return valueCodec.decode(block);
+                } else if (comp < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 按关键字顺序遍历文件中的所有数据，校验失败时抛出 UncheckedIOException
+         */
+        public Iterator<Map.Entry<K, V>> iterator() {
+            return new Iterator<Map.Entry<K, V>>() {
+
+                private int blockIndex = -1;
+
+                private int remaining;
+
+                private ByteBuffer current;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0 || blockIndex + 1 < firstKeys.length;
+                }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                    if (remaining == 0) {
+                        if (blockIndex + 1 >= firstKeys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        blockIndex++;
+                        try {
+                            current = block(blockIndex);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        current.position(0);
+                        remaining = entries[blockIndex];
+                    }
+                    remaining--;
+                    K key = keyCodec.decode(current);
+                    return new SimpleEntry<K, V>(key, valueCodec.decode(current));
+                }
+            };
+        }
+
+        // 解压并校验第i个数据块，返回的缓冲区在读取下一个数据块前有效
+        private ByteBuffer block(int i) throws IOException {
+            if (cachedBlock == i) {
+                return block;
+            }
+            int offset = (int) offsets[i];
+            int length = mapped.getInt(offset);
+            int checksum = mapped.getInt(offset + 8);
+            int rawSize = entries[i] * (keyCodec.size() + valueCodec.size());
+            if (block == null || block.capacity() < rawSize) {
+                block = ByteBuffer.allocate(rawSize);
+            }
+            if (compressed.length < length) {
+                compressed = new byte[length];
+            }
+            //解压会覆盖缓冲区，校验通过前缓存无效
+            cachedBlock = -1;
+            ByteBuffer source = mapped.duplicate();
+            source.position(offset + BLOCK_HEADER_SIZE);
+            source.get(compressed, 0, length);
+            inflater.reset();
+            inflater.setInput(compressed, 0, length);
+            try {
+                int n = 0;
+                while (n < rawSize && !inflater.finished()) {
+                    int inflated = inflater.inflate(block.array(), n, rawSize - n);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += inflated;
+                }
+                if (n != rawSize) {
+                    throw new IOException("truncated block " + i + ": " + path);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("corrupt block " + i + ": " + path, e);
+            }
+            crc.reset();
+            crc.update(block.array(), 0, rawSize);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("block checksum mismatch " + i + ": " + path);
+            }
+            block.clear();
+            block.limit(rawSize);
+            cachedBlock = i;
+            return block;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            channel.close();
+        }
+    }
+}
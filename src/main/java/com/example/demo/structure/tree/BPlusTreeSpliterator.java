@@ -0,0 +1,185 @@
+package com.example.demo.structure.tree;
+
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * @ClassName BPlusTreeSpliterator
+ * @Description: 按非叶子节点的子节点边界切分的区间 [from, to) 扫描：
+ * 1.未开始遍历时覆盖某个节点的一段连续子节点 [low, high)，trySplit 把前一半子节点交给新的 Spliterator；
+ * 只剩一个子节点时下降到该子节点继续切分，直到叶子节点；
+ * 2.from 只约束第一个子节点，to 只约束最后一个子节点，切分后不含边界的一半不再比较边界；
+ * 3.遍历时沿叶子节点链表前进，在叶子节点内跳过墓碑、先过滤再投影，不满足条件的关键字不产生任何对象；
+ * 4.估计大小取自非叶子节点维护的子树关键字数。
+ * 遍历期间树不能被修改。
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+final class BPlusTreeSpliterator<K extends Comparable<K>, V, R> implements Spliterator<R> {
+
+    private final BiPredicate<? super K, ? super V> filter;
+
+    private final BiFunction<? super K, ? super V, ? extends R> projection;
+
+    // 区间下界（含），null表示只受子节点范围约束
+    private K from;
+
+    // 区间上界（不含），null表示只受子节点范围约束
+    private K to;
+
+    // 未开始遍历时覆盖的节点及其子节点范围 [low, high)，叶子节点时不使用 low / high
+    private BPlusNode<K, V> node;
+
+    private int low;
+
+    private int high;
+
+    // 遍历位置，null表示尚未开始
+    private BPlusNode<K, V> leaf;
+
+    private int index;
+
+    // 最后一个要遍历的叶子节点
+    private BPlusNode<K, V> fence;
+
+    // 开始遍历时的估计大小
+    private long estimate;
+
+    BPlusTreeSpliterator(BPlusNode<K, V> root, K from, K to,
+                         BiPredicate<? super K, ? super V> filter,
+                         BiFunction<? super K, ? super V, ? extends R> projection) {
+        this.filter = filter;
+        this.projection = projection;
+        this.from = from;
+        this.to = to;
+        setNode(root);
+    }
+
+    private BPlusTreeSpliterator(BPlusTreeSpliterator<K, V, R> parent, int low, int high) {
+        this.filter = parent.filter;
+        this.projection = parent.projection;
+        this.from = parent.from;
+        this.node = parent.node;
+        this.low = low;
+        this.high = high;
+    }
+
+    // 覆盖node中与区间相交的子节点，只剩一个子节点时继续下降
+    private void setNode(BPlusNode<K, V> node) {
+        while (!node.isLeaf) {
+            int low = from == null ? 0 : node.childIndex(from);
+            int high = to == null ? node.children.size() : node.childIndex(to) + 1;
+            if (high - low > 1) {
+                this.node = node;
+                this.low = low;
+                this.high = high;
+                return;
+            }
+            node = node.children.get(low);
+        }
+        this.node = node;
+    }
+
+    @Override
+    public Spliterator<R> trySplit() {
+        if (node == null || node.isLeaf) {
+            return null;
+        }
+        int mid = (low + high) >>> 1;
+        //前一半不含最后一个子节点，其中的关键字都小于to
+        BPlusTreeSpliterator<K, V, R> prefix = new BPlusTreeSpliterator<K, V, R>(this, low, mid);
+        if (mid - low == 1) {
+            prefix.setNode(node.children.get(low));
+        }
+        //后一半的第一个子节点中的关键字都不小于from
+        from = null;
+        if (high - mid == 1) {
+            setNode(node.children.get(mid));
+        } else {
+            low = mid;
+        }
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super R> action) {
+        start();
+        while (leaf != null) {
+            while (index < leaf.entries.size()) {
+                Map.Entry<K, V> entry = leaf.entries.get(index++);
+                K key = entry.getKey();
+                if (to != null && key.compareTo(to) >= 0) {
+                    leaf = null;
+                    return false;
+                }
+                V value = entry.getValue();
+                if (value != BPlusNode.TOMBSTONE && filter.test(key, value)) {
+                    action.accept(projection.apply(key, value));
+                    return true;
+                }
+            }
+            nextLeaf();
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super R> action) {
+        start();
+        for (; leaf != null; nextLeaf()) {
+            for (int n = leaf.entries.size(); index < n; index++) {
+                Map.Entry<K, V> entry = leaf.entries.get(index);
+                K key = entry.getKey();
+                if (to != null && key.compareTo(to) >= 0) {
+                    leaf = null;
+                    return;
+                }
+                V value = entry.getValue();
+                if (value != BPlusNode.TOMBSTONE && filter.test(key, value)) {
+                    action.accept(projection.apply(key, value));
+                }
+            }
+        }
+    }
+
+    // 第一次遍历时定位起始叶子节点和最后一个叶子节点
+    private void start() {
+        if (leaf != null || node == null) {
+            return;
+        }
+        estimate = estimateSize();
+        BPlusNode<K, V> first = node.isLeaf ? node : node.children.get(low);
+        fence = node.isLeaf ? node : node.children.get(high - 1).lastLeaf();
+        leaf = from == null ? first.firstLeaf() : first.findLeaf(from);
+        index = from == null ? 0 : leaf.lowerBound(from);
+        node = null;
+    }
+
+    private void nextLeaf() {
+        leaf = leaf == fence ? null : leaf.next;
+        index = 0;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (node == null) {
+            return leaf == null ? 0 : estimate;
+        }
+        if (node.isLeaf) {
+            return node.size();
+        }
+        long size = 0;
+        for (int i = low; i < high; i++) {
+            size += node.children.get(i).size();
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED;
+    }
+}
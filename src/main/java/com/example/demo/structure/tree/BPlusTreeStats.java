@@ -0,0 +1,252 @@
+package com.example.demo.structure.tree;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @ClassName BPlusTreeStats
+ * @Description: B+树的结构统计，随树的修改增量维护，开销只是几次计数器自增：
+ * 1.叶子节点与非叶子节点的分裂、合并、借补次数；
+ * 2.关键字数和每一层的节点数，由此得到叶子节点和非叶子节点的填充率；
+ * 3.查找次数、关键字比较次数，以及被布隆过滤器直接排除的查找次数。
+ *
+ * 读取统计不遍历树，可以在其他线程（例如通过 JMX）读取；计数器不加同步，读到的可能是稍旧的值。
+ * 直接用 {@link BPlusTree#setRoot} 替换树的结构后需调用 {@link #recount()} 重新统计。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public class BPlusTreeStats implements BPlusTreeStatsMXBean {
+
+    private final BPlusTree<?, ?> tree;
+
+    // 关键字个数，不含墓碑
+    long size;
+
+    // 延迟删除留下、尚未整理的墓碑个数
+    long tombstones;
+
+    // 每一层的节点数，下标0为叶子层；空树只有一个作为根的叶子节点
+    long[] levelNodes = {1};
+
+    long leafSplits;
+
+    long internalSplits;
+
+    long leafMerges;
+
+    long internalMerges;
+
+    long leafBorrows;
+
+    long internalBorrows;
+
+    long lookups;
+
+    long comparisons;
+
+    // 被布隆过滤器判定为不存在、未下降查找的次数
+    long bloomNegatives;
+
+    BPlusTreeStats(BPlusTree<?, ?> tree) {
+        this.tree = tree;
+    }
+
+    // 第level层（叶子层为0）增加count个节点
+    void nodesAdded(int level, int count) {
+        levelNodes[level] += count;
+    }
+
+    // 第level层（叶子层为0）减少一个节点
+    void nodeRemoved(int level) {
+        levelNodes[level]--;
+    }
+
+    // 根节点分裂，树增加一层
+    void rootAdded() {
+        levelNodes = Arrays.copyOf(levelNodes, levelNodes.length + 1);
+        levelNodes[levelNodes.length - 1] = 1;
+    }
+
+    // 根节点与唯一的子节点合并，树减少一层
+    void rootRemoved() {
+        levelNodes = Arrays.copyOf(levelNodes, levelNodes.length - 1);
+    }
+
+    /**
+     * 遍历整棵树，重新统计关键字数和每一层的节点数
+     */
+    public void recount() {
+        List<Long> counts = new ArrayList<Long>();
+        long entries = 0;
+        long tombstones = 0;
+        List<BPlusNode<?, ?>> level = new ArrayList<BPlusNode<?, ?>>();
+        level.add(tree.getRoot());
+        while (!level.isEmpty()) {
+            counts.add((long) level.size());
+            List<BPlusNode<?, ?>> next = new ArrayList<BPlusNode<?, ?>>();
+            for (BPlusNode<?, ?> node : level) {
+                if (node.isLeaf) {
+                    entries += node.entries.size() - node.tombstones;
+                    tombstones += node.tombstones;
+                } else {
+                    next.addAll(node.children);
+                }
+            }
+            level = next;
+        }
+        long[] levelNodes = new long[counts.size()];
+        for (int i = 0; i < levelNodes.length; i++) {
+            levelNodes[i] = counts.get(counts.size() - 1 - i);
+        }
+        this.levelNodes = levelNodes;
+        this.size = entries;
+        this.tombstones = tombstones;
+    }
+
+    /**
+     * 以 com.example.demo.structure.tree:type=BPlusTree,name=&lt;name&gt; 注册到平台 MBeanServer
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.example.demo.structure.tree:type=BPlusTree,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    public void unregister(ObjectName objectName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return tree.getOrder();
+    }
+
+    @Override
+    public int getHeight() {
+        return tree.getHeight();
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public long[] getLevelNodeCounts() {
+        long[] levelNodes = this.levelNodes;
+        long[] counts = new long[levelNodes.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = levelNodes[levelNodes.length - 1 - i];
+        }
+        return counts;
+    }
+
+    @Override
+    public long getLeafCount() {
+        return levelNodes[0];
+    }
+
+    @Override
+    public double getLeafFillFactor() {
+        return (double) size / (levelNodes[0] * (long) tree.getOrder());
+    }
+
+    @Override
+    public double getInternalFillFactor() {
+        long[] levelNodes = this.levelNodes;
+        long internal = 0, children = 0;
+        for (int i = 1; i < levelNodes.length; i++) {
+            internal += levelNodes[i];
+            children += levelNodes[i - 1];
+        }
+        return internal == 0 ? 0 : (double) children / (internal * (long) tree.getOrder());
+    }
+
+    @Override
+    public long getLeafSplits() {
+        return leafSplits;
+    }
+
+    @Override
+    public long getInternalSplits() {
+        return internalSplits;
+    }
+
+    @Override
+    public long getLeafMerges() {
+        return leafMerges;
+    }
+
+    @Override
+    public long getInternalMerges() {
+        return internalMerges;
+    }
+
+    @Override
+    public long getLeafBorrows() {
+        return leafBorrows;
+    }
+
+    @Override
+    public long getInternalBorrows() {
+        return internalBorrows;
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups;
+    }
+
+    @Override
+    public long getTombstones() {
+        return tombstones;
+    }
+
+    @Override
+    public long getBloomFilterNegatives() {
+        return bloomNegatives;
+    }
+
+    @Override
+    public double getComparisonsPerLookup() {
+        long lookups = this.lookups;
+        return lookups == 0 ? 0 : (double) comparisons / lookups;
+    }
+
+    @Override
+    public void resetCounters() {
+        leafSplits = 0;
+        internalSplits = 0;
+        leafMerges = 0;
+        internalMerges = 0;
+        leafBorrows = 0;
+        internalBorrows = 0;
+        lookups = 0;
+        comparisons = 0;
+        bloomNegatives = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BPlusTreeStats{order=" + getOrder() + ", height=" + getHeight() + ", size=" + size
+                + ", tombstones=" + tombstones
+                + ", levelNodes=" + Arrays.toString(getLevelNodeCounts())
+                + ", leafFill=" + String.format("%.2f", getLeafFillFactor())
+                + ", internalFill=" + String.format("%.2f", getInternalFillFactor())
+                + ", splits=" + leafSplits + "/" + internalSplits
+                + ", merges=" + leafMerges + "/" + internalMerges
+                + ", borrows=" + leafBorrows + "/" + internalBorrows
+                + ", bloomNegatives=" + bloomNegatives
+                + ", comparisonsPerLookup=" + String.format("%.2f", getComparisonsPerLookup()) + "}";
+    }
+}
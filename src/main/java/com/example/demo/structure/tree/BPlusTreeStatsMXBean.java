@@ -0,0 +1,67 @@
+package com.example.demo.structure.tree;
+
+/**
+ * @ClassName BPlusTreeStatsMXBean
+ * @Description: B+树统计信息的 JMX 接口，属性由 {@link BPlusTreeStats} 提供
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public interface BPlusTreeStatsMXBean {
+
+    int getOrder();
+
+    int getHeight();
+
+    long getSize();
+
+    /**
+     * @return 延迟删除留下、尚未被 {@link BPlusTree#compact} 整理掉的墓碑个数
+     */
+    long getTombstones();
+
+    /**
+     * @return 从根节点所在层到叶子层，每一层的节点数
+     */
+    long[] getLevelNodeCounts();
+
+    long getLeafCount();
+
+    /**
+     * @return 叶子节点的平均填充率：关键字数 / (叶子节点数 * M)
+     */
+    double getLeafFillFactor();
+
+    /**
+     * @return 非叶子节点的平均填充率：子节点数 / (非叶子节点数 * M)，没有非叶子节点时为0
+     */
+    double getInternalFillFactor();
+
+    long getLeafSplits();
+
+    long getInternalSplits();
+
+    long getLeafMerges();
+
+    long getInternalMerges();
+
+    long getLeafBorrows();
+
+    long getInternalBorrows();
+
+    long getLookups();
+
+    /**
+     * @return 被布隆过滤器判定为不存在、没有下降查找的次数，包含在 {@link #getLookups()} 中
+     */
+    long getBloomFilterNegatives();
+
+    /**
+     * @return 每次查找平均的关键字比较次数
+     */
+    double getComparisonsPerLookup();
+
+    /**
+     * 清零分裂、合并、借补、查找等计数，不影响结构统计
+     */
+    void resetCounters();
+}
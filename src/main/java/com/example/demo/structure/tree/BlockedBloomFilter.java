@@ -0,0 +1,82 @@
+package com.example.demo.structure.tree;
+
+/**
+ * @ClassName BlockedBloomFilter
+ * @Description: 分块布隆过滤器：位数组按 512 位（一条 64 字节缓存行）分块，
+ * 一个关键字的全部 k 个位落在同一块内，判断一次只访问一条缓存行。
+ * 1.散列值高 32 位选块，另一次混合后的散列值每 9 位选块内的一个位，k 不超过 7；
+ * 2.只支持添加，删除关键字后位不会清除，只会增加误判，由使用方按需重建。
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+final class BlockedBloomFilter {
+
+    // 每块的 long 个数，8 * 64 = 512 位
+    private static final int BLOCK_LONGS = 8;
+
+    private final long[] bits;
+
+    // 块数
+    private final int blocks;
+
+    // 每个关键字设置的位数
+    private final int hashes;
+
+    // 按该容量分配，添加的关键字超过容量后误判率上升
+    private final int capacity;
+
+    /**
+     * @param capacity   预计的关键字个数
+     * @param bitsPerKey 每个关键字占用的位数，10 位时误判率约 1%
+     */
+    BlockedBloomFilter(int capacity, int bitsPerKey) {
+        this.capacity = Math.max(1, capacity);
+        long totalBits = (long) this.capacity * bitsPerKey;
+        this.blocks = (int) Math.min(Integer.MAX_VALUE / BLOCK_LONGS, Math.max(1, (totalBits + 511) / 512));
+        this.bits = new long[blocks * BLOCK_LONGS];
+        this.hashes = Math.max(1, Math.min(7, (int) Math.round(bitsPerKey * Math.log(2))));
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    void add(Object key) {
+        long hash = mix(key.hashCode());
+        int base = block(hash);
+        long h = hash * 0xC2B2AE3D27D4EB4FL;
+        for (int i = 0; i < hashes; i++, h >>>= 9) {
+            int bit = (int) h & 511;
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return false 表示一定不存在，true 表示可能存在
+     */
+    boolean mightContain(Object key) {
+        long hash = mix(key.hashCode());
+        int base = block(hash);
+        long h = hash * 0xC2B2AE3D27D4EB4FL;
+        for (int i = 0; i < hashes; i++, h >>>= 9) {
+            int bit = (int) h & 511;
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 高 32 位按乘法映射到 [0, blocks)，返回块的起始下标
+    private int block(long hash) {
+        return (int) (((hash >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+    }
+
+    // 打散 hashCode，Integer 等关键字的 hashCode 就是自身，不能直接使用
+    private static long mix(int hashCode) {
+        long h = hashCode * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+}
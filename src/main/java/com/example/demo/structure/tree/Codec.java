@@ -0,0 +1,102 @@
+package com.example.demo.structure.tree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @ClassName Codec
+ * @Description: 关键字 / 值的定长二进制编码
+ * 每个对象编码后固定占用 {@link #size()} 个字节，页面中的每个槽位因此大小相同，可以按下标直接定位。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public interface Codec<T> {
+
+    /**
+     * @return 编码后占用的字节数
+     */
+    int size();
+
+    /**
+     * 从 buffer 当前位置写入 size() 个字节
+     */
+    void encode(ByteBuffer buffer, T value);
+
+    /**
+     * 从 buffer 当前位置读取 size() 个字节
+     */
+    T decode(ByteBuffer buffer);
+
+    Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public int size() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(ByteBuffer buffer, Long value) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long decode(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public int size() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(ByteBuffer buffer, Integer value) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    /**
+     * UTF-8 字符串编码：2 字节长度 + 内容，不足 maxBytes 的部分补零
+     *
+     * @param maxBytes 字符串 UTF-8 编码后的最大字节数
+     */
+    static Codec<String> string(final int maxBytes) {
+        if (maxBytes <= 0 || maxBytes > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Illegal max bytes: " + maxBytes);
+        }
+        return new Codec<String>() {
+            @Override
+            public int size() {
+                return Short.BYTES + maxBytes;
+            }
+
+            @Override
+            public void encode(ByteBuffer buffer, String value) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > maxBytes) {
+                    throw new IllegalArgumentException("string longer than " + maxBytes + " bytes: " + value);
+                }
+                buffer.putShort((short) bytes.length);
+                buffer.put(bytes);
+                for (int i = bytes.length; i < maxBytes; i++) {
+                    buffer.put((byte) 0);
+                }
+            }
+
+            @Override
+            public String decode(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.getShort()];
+                buffer.get(bytes);
+                buffer.position(buffer.position() + maxBytes - bytes.length);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+}
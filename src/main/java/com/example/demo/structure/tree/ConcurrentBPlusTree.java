@@ -0,0 +1,374 @@
+package com.example.demo.structure.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * @ClassName ConcurrentBPlusTree
+ * @Description: 线程安全的B+树（B-link树 + 乐观锁耦合）
+ * 1.每个节点带一个版本号（StampedLock 的乐观读戳），读操作全程不加锁：
+ *   读取节点内容后校验版本号，版本号变化说明读取期间节点被修改，重新读取该节点；
+ * 2.每个节点记录上界 highKey 和右兄弟 right（Lehman-Yao B-link），
+ *   节点只会向右分裂，key 大于等于 highKey 时沿 right 右移即可找到正确的节点，
+ *   因此读操作不需要锁住父节点，写操作也只需要锁住正在修改的节点；
+ * 3.插入时只锁住叶子节点，分裂后先解锁子节点，再锁住父节点插入新的关键字，任一时刻最多持有两把锁，
+ *   加锁顺序为自底向上、从左到右，不会死锁；
+ * 4.删除时只锁住叶子节点，不做借补与合并（与 Lehman-Yao 相同），节点一旦创建就不会从树中摘除，
+ *   读操作不需要处理节点被回收的情况。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@SuppressWarnings("unchecked")
+public class ConcurrentBPlusTree<K extends Comparable<K>, V> {
+
+    // 根节点，只会被新的根节点替换
+    private volatile Node<K, V> root;
+
+    // 替换根节点时的锁
+    private final Object rootLock = new Object();
+
+    // 阶数，M值
+    private final int order;
+
+    // 关键字个数
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentBPlusTree(int order) {
+        if (order < 3) {
+            throw new IllegalArgumentException("order must be greater than 2");
+        }
+        this.order = order;
+        this.root = new Node<K, V>(true, 0, order);
+    }
+
+    static final class Node<K extends Comparable<K>, V> {
+
+        // 版本号，写锁期间读戳失效
+        final StampedLock lock = new StampedLock();
+
+        // 是否为叶子节点
+        final boolean isLeaf;
+
+        // 所在层级，叶子节点为0
+        final int level;
+
+        // 关键字个数
+        int size;
+
+        // 关键字，多预留一个位置用于分裂前的溢出
+        final Object[] keys;
+
+        // 叶子节点的值
+        final Object[] values;
+
+        // 非叶子节点的子节点，个数为 size + 1
+        final Node<K, V>[] children;
+
+        // 节点中关键字的上界（不包含），null 表示正无穷
+        K highKey;
+
+        // 同层右兄弟节点
+        Node<K, V> right;
+
+        Node(boolean isLeaf, int level, int order) {
+            this.isLeaf = isLeaf;
+            this.level = level;
+            this.keys = new Object[order + 1];
+            if (isLeaf) {
+                values = new Object[order + 1];
+                children = null;
+            } else {
+                values = null;
+                children = new Node[order + 1];
+            }
+        }
+
+        // key 是否超出当前节点的范围，需要右移
+        boolean beyond(K key) {
+            K high = highKey;
+            return high != null && key.compareTo(high) >= 0;
+        }
+
+        // 第一个大于等于key的位置；乐观读期间读到不一致的数据时返回-1
+        int lowerBound(K key, int n) {
+            int low = 0, high = n - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                K k = (K) keys[mid];
+                if (k == null) {
+                    return -1;
+                }
+                if (k.compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        // 关键字中小于等于key的个数；乐观读期间读到不一致的数据时返回-1
+        int childIndex(K key, int n) {
+            int low = 0, high = n - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                K k = (K) keys[mid];
+                if (k == null) {
+                    return -1;
+                }
+                if (k.compareTo(key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        // 乐观读取节点中关键字的个数，读到不一致的数据时返回-1
+        int readSize() {
+            int n = size;
+            return n < 0 || n >= keys.length ? -1 : n;
+        }
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    public long size() {
+        return size.sum();
+    }
+
+    public V get(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        Node<K, V> node = descend(key, null, 0);
+        for (;;) {
+            long stamp = node.lock.tryOptimisticRead();
+            if (stamp == 0) {
+                Thread.yield();
+                continue;
+            }
+            boolean beyond = node.beyond(key);
+            Node<K, V> right = node.right;
+            Object value = null;
+            int n = node.readSize();
+            int index = n < 0 ? -1 : node.lowerBound(key, n);
+            if (index >= 0 && index < n) {
+                Object k = node.keys[index];
+                if (k != null && key.compareTo((K) k) == 0) {
+                    value = node.values[index];
+                }
+            }
+            if (!node.lock.validate(stamp) || index < 0) {
+                continue;
+            }
+            if (beyond) {
+                node = right;
+                continue;
+            }
+            return (V) value;
+        }
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 插入或更新
+     *
+     * @return 原来与key关联的值，不存在时返回null
+     */
+    public V insertOrUpdate(K key, V value) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        List<Node<K, V>> path = new ArrayList<Node<K, V>>();
+        Node<K, V> leaf = lockNode(descend(key, path, 0), key);
+        int index = leaf.lowerBound(key, leaf.size);
+        if (index < leaf.size && ((K) leaf.keys[index]).compareTo(key) == 0) {
+            Object old = leaf.values[index];
+            leaf.values[index] = value;
+            leaf.lock.tryUnlockWrite();
+            return (V) old;
+        }
+        System.arraycopy(leaf.keys, index, leaf.keys, index + 1, leaf.size - index);
+        System.arraycopy(leaf.values, index, leaf.values, index + 1, leaf.size - index);
+        leaf.keys[index] = key;
+        leaf.values[index] = value;
+        leaf.size++;
+        size.increment();
+        if (leaf.size <= order) {
+            leaf.lock.tryUnlockWrite();
+            return null;
+        }
+        //需要分裂，逐层向上插入分裂出的右节点
+        Node<K, V> node = leaf;
+        for (;;) {
+            Node<K, V> right = split(node);
+            K separator = node.highKey;
+            boolean isRoot = node == root;
+            node.lock.tryUnlockWrite();
+            if (isRoot && growRoot(node, separator, right)) {
+                return null;
+            }
+            Node<K, V> parent = lockNode(parentOf(node, separator, path), separator);
+            int position = parent.childIndex(separator, parent.size);
+            System.arraycopy(parent.keys, position, parent.keys, position + 1, parent.size - position);
+            System.arraycopy(parent.children, position + 1, parent.children, position + 2, parent.size - position);
+            parent.keys[position] = separator;
+            parent.children[position + 1] = right;
+            parent.size++;
+            if (parent.size + 1 <= order) {
+                parent.lock.tryUnlockWrite();
+                return null;
+            }
+            node = parent;
+        }
+    }
+
+    /**
+     * 删除，只从叶子节点中摘除关键字，不合并节点
+     *
+     * @return 被删除的值，不存在时返回null
+     */
+    public V remove(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        Node<K, V> leaf = lockNode(descend(key, null, 0), key);
+        try {
+            int index = leaf.lowerBound(key, leaf.size);
+            if (index == leaf.size || ((K) leaf.keys[index]).compareTo(key) != 0) {
+                return null;
+            }
+            Object old = leaf.values[index];
+            System.arraycopy(leaf.keys, index + 1, leaf.keys, index, leaf.size - index - 1);
+            System.arraycopy(leaf.values, index + 1, leaf.values, index, leaf.size - index - 1);
+            leaf.size--;
+            leaf.keys[leaf.size] = null;
+            leaf.values[leaf.size] = null;
+            size.decrement();
+            return (V) old;
+        } finally {
+            leaf.lock.tryUnlockWrite();
+        }
+    }
+
+    /**
+     * 从根节点乐观下降到指定层级中包含key的节点，不加任何锁
+     *
+     * @param path 不为null时记录下降经过的每一层节点，path.get(i) 为第 i+1 层的节点
+     */
+    private Node<K, V> descend(K key, List<Node<K, V>> path, int level) {
+        Node<K, V> node = root;
+        //目标层级高于根节点，说明原根节点刚分裂、新的根节点尚未生成，等待分裂线程完成
+        while (node.level < level) {
+            Thread.yield();
+            node = root;
+        }
+        if (path != null) {
+            for (int i = path.size(); i < node.level; i++) {
+                path.add(null);
+            }
+        }
+        while (node.level > level) {
+            long stamp = node.lock.tryOptimisticRead();
+            if (stamp == 0) {
+                Thread.yield();
+                continue;
+            }
+            boolean beyond = node.beyond(key);
+            Node<K, V> next = node.right;
+            if (!beyond) {
+                int n = node.readSize();
+                int index = n < 0 ? -1 : node.childIndex(key, n);
+                next = index < 0 ? null : node.children[index];
+            }
+            if (!node.lock.validate(stamp) || next == null) {
+                continue;
+            }
+            if (!beyond && path != null) {
+                path.set(node.level - 1, node);
+            }
+            node = next;
+        }
+        return node;
+    }
+
+    // 锁住包含key的节点：先锁住给定节点，key 超出其上界时向右耦合加锁
+    private Node<K, V> lockNode(Node<K, V> node, K key) {
+        node.lock.writeLock();
+        while (node.beyond(key)) {
+            Node<K, V> right = node.right;
+            right.lock.writeLock();
+            node.lock.tryUnlockWrite();
+            node = right;
+        }
+        return node;
+    }
+
+    // 找到 node 的父节点（可能已经右移），下降时没有经过该层说明期间根节点发生了分裂，从新的根节点重新下降
+    private Node<K, V> parentOf(Node<K, V> node, K separator, List<Node<K, V>> path) {
+        int level = node.level + 1;
+        Node<K, V> parent = level <= path.size() ? path.get(level - 1) : null;
+        return parent != null ? parent : descend(separator, null, level);
+    }
+
+    // 分裂前节点是根节点时尝试生成新的根节点，根节点已被其他线程替换时返回false
+    private boolean growRoot(Node<K, V> left, K separator, Node<K, V> right) {
+        synchronized (rootLock) {
+            if (root != left) {
+                return false;
+            }
+            Node<K, V> parent = new Node<K, V>(false, left.level + 1, order);
+            parent.keys[0] = separator;
+            parent.children[0] = left;
+            parent.children[1] = right;
+            parent.size = 1;
+            root = parent;
+            return true;
+        }
+    }
+
+    // 分裂已加锁的节点，右半部分移到新节点，并把分隔关键字设为当前节点的上界
+    private Node<K, V> split(Node<K, V> node) {
+        Node<K, V> right = new Node<K, V>(node.isLeaf, node.level, order);
+        K separator;
+        if (node.isLeaf) {
+            int leftSize = (order + 1) / 2 + (order + 1) % 2;
+            right.size = node.size - leftSize;
+            System.arraycopy(node.keys, leftSize, right.keys, 0, right.size);
+            System.arraycopy(node.values, leftSize, right.values, 0, right.size);
+            for (int i = leftSize; i < node.size; i++) {
+                node.keys[i] = null;
+                node.values[i] = null;
+            }
+            node.size = leftSize;
+            separator = (K) right.keys[0];
+        } else {
+            int children = node.size + 1;
+            int leftChildren = children / 2 + children % 2;
+            right.size = children - leftChildren - 1;
+            System.arraycopy(node.keys, leftChildren, right.keys, 0, right.size);
+            System.arraycopy(node.children, leftChildren, right.children, 0, right.size + 1);
+            separator = (K) node.keys[leftChildren - 1];
+            for (int i = leftChildren - 1; i < node.size; i++) {
+                node.keys[i] = null;
+                node.children[i + 1] = null;
+            }
+            node.size = leftChildren - 1;
+        }
+        right.highKey = node.highKey;
+        right.right = node.right;
+        node.highKey = separator;
+        node.right = right;
+        return right;
+    }
+}
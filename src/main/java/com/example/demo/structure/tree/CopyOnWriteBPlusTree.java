@@ -0,0 +1,596 @@
+package com.example.demo.structure.tree;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * @ClassName CopyOnWriteBPlusTree
+ * @Description: 支持快照隔离（MVCC）的B+树
+ * 1.{@link #snapshot()} 返回当前根节点的只读视图，获取快照是 O(1) 的，快照上的读操作不加锁；
+ * 2.写操作采用路径复制：要修改的节点如果可能被某个未关闭的快照引用，就先复制一份再修改，
+ *   并沿路径向上复制父节点，最后替换根节点，快照看到的节点永远不会被修改；
+ * 3.每个节点记录创建时的纪元（epoch），每次获取快照纪元加一。节点纪元大于所有未关闭快照的纪元时，
+ *   说明它是快照之后创建的，只属于当前版本，可以原地修改。没有未关闭的快照时所有写操作都原地进行，
+ *   与普通B+树的开销相同；
+ * 4.快照关闭后不再有引用的旧版本节点由 GC 回收。
+ *
+ * 写操作之间、写操作与 {@link #snapshot()} 之间互斥；快照可以在任意线程上读取。
+ * 节点没有父节点指针和叶子链表（它们会让一次修改扩散到整棵树），快照的扫描通过栈遍历完成。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@SuppressWarnings("unchecked")
+public class CopyOnWriteBPlusTree<K extends Comparable<K>, V> {
+
+    // 当前版本的根节点
+    private volatile Node<K, V> root;
+
+    // 阶数，M值
+    private final int order;
+
+    // 当前纪元，新建或复制的节点使用该纪元
+    private long epoch;
+
+    // 未关闭快照的纪元 -> 数量
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<Long, Integer>();
+
+    // 未关闭快照的最大纪元，节点纪元不大于它时需要复制
+    private long sharedEpoch = -1;
+
+    // 当前版本的树高
+    private volatile int height = 1;
+
+    // 当前版本的关键字个数
+    private volatile int size;
+
+    // 节点分裂时上推到父节点的关键字
+    private K splitKey;
+
+    // 节点分裂出的右节点
+    private Node<K, V> splitRight;
+
+    // 最近一次插入或删除前与关键字关联的值
+    private V oldValue;
+
+    public CopyOnWriteBPlusTree(int order) {
+        if (order < 3) {
+            throw new IllegalArgumentException("order must be greater than 2");
+        }
+        this.order = order;
+        this.root = new Node<K, V>(true, 0, order);
+    }
+
+    static final class Node<K extends Comparable<K>, V> {
+
+        // 是否为叶子节点
+        final boolean isLeaf;
+
+        // 创建时的纪元
+        final long epoch;
+
+        // 关键字个数
+        int size;
+
+        // 关键字，多预留一个位置用于分裂前的溢出
+        final Object[] keys;
+
+        // 叶子节点的值
+        final Object[] values;
+
+        // 非叶子节点的子节点，个数为 size + 1
+        final Node<K, V>[] children;
+
+        Node(boolean isLeaf, long epoch, int order) {
+            this.isLeaf = isLeaf;
+            this.epoch = epoch;
+            this.keys = new Object[order + 1];
+            if (isLeaf) {
+                values = new Object[order + 1];
+                children = null;
+            } else {
+                values = null;
+                children = new Node[order + 1];
+            }
+        }
+
+        // 以新的纪元复制节点
+        Node<K, V> copy(long epoch, int order) {
+            Node<K, V> copy = new Node<K, V>(isLeaf, epoch, order);
+            copy.size = size;
+            System.arraycopy(keys, 0, copy.keys, 0, size);
+            if (isLeaf) {
+                System.arraycopy(values, 0, copy.values, 0, size);
+            } else {
+                System.arraycopy(children, 0, copy.children, 0, size + 1);
+            }
+            return copy;
+        }
+
+        // 第一个大于等于key的位置
+        int lowerBound(K key) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (((K) keys[mid]).compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        // 关键字中小于等于key的个数
+        int childIndex(K key) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (((K) keys[mid]).compareTo(key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        V get(K key) {
+            Node<K, V> node = this;
+            while (!node.isLeaf) {
+                node = node.children[node.childIndex(key)];
+            }
+            int index = node.lowerBound(key);
+            if (index < node.size && ((K) node.keys[index]).compareTo(key) == 0) {
+                return (V) node.values[index];
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 只读快照，使用完毕后必须关闭，否则写操作会一直复制节点
+     */
+    public static final class Snapshot<K extends Comparable<K>, V> implements AutoCloseable {
+
+        private final CopyOnWriteBPlusTree<K, V> tree;
+
+        private final Node<K, V> root;
+
+        private final long epoch;
+
+        private final int height;
+
+        private final int size;
+
+        private boolean closed;
+
+        Snapshot(CopyOnWriteBPlusTree<K, V> tree, Node<K, V> root, long epoch, int height, int size) {
+            this.tree = tree;
+            this.root = root;
+            this.epoch = epoch;
+            this.height = height;
+            this.size = size;
+        }
+
+        public V get(K key) {
+            return root.get(key);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * 按关键字升序扫描区间 [from, to)，null表示该方向不设边界
+         */
+        public Cursor<K, V> scan(K from, K to) {
+            return new Cursor<K, V>(root, height).seek(from, to);
+        }
+
+        @Override
+        public void close() {
+            synchronized (tree) {
+                if (!closed) {
+                    closed = true;
+                    tree.release(epoch);
+                }
+            }
+        }
+    }
+
+    /**
+     * 快照上的升序扫描游标，用一个按层级保存 (节点, 下标) 的栈代替叶子链表，每前进一步不分配对象
+     */
+    public static final class Cursor<K extends Comparable<K>, V> {
+
+        private final Node<K, V> root;
+
+        // 从根到叶子每一层的节点
+        private final Node<K, V>[] nodes;
+
+        // 每一层当前所在的下标
+        private final int[] indexes;
+
+        private K to;
+
+        private boolean exhausted;
+
+        private K key;
+
+        private V value;
+
+        private boolean positioned;
+
+        Cursor(Node<K, V> root, int height) {
+            this.root = root;
+            this.nodes = new Node[height];
+            this.indexes = new int[height];
+        }
+
+        /**
+         * 重新定位到区间 [from, to) 的起点
+         */
+        public Cursor<K, V> seek(K from, K to) {
+            this.to = to;
+            this.exhausted = false;
+            this.positioned = false;
+            Node<K, V> node = root;
+            int level = 0;
+            while (!node.isLeaf) {
+                int index = from == null ? 0 : node.childIndex(from);
+                nodes[level] = node;
+                indexes[level] = index;
+                node = node.children[index];
+                level++;
+            }
+            nodes[level] = node;
+            indexes[level] = from == null ? 0 : node.lowerBound(from);
+            return this;
+        }
+
+        public boolean next() {
+            positioned = false;
+            if (exhausted) {
+                return false;
+            }
+            int leaf = nodes.length - 1;
+            //当前叶子节点读完后回溯到还有右侧子节点的层级，再沿最左子节点下降
+            while (indexes[leaf] >= nodes[leaf].size) {
+                int level = leaf - 1;
+                while (level >= 0 && indexes[level] >= nodes[level].size) {
+                    level--;
+                }
+                if (level < 0) {
+                    exhausted = true;
+                    return false;
+                }
+                indexes[level]++;
+                for (; level < leaf; level++) {
+                    nodes[level + 1] = nodes[level].children[indexes[level]];
+                    indexes[level + 1] = 0;
+                }
+            }
+            Node<K, V> node = nodes[leaf];
+            K k = (K) node.keys[indexes[leaf]];
+            if (to != null && k.compareTo(to) >= 0) {
+                exhausted = true;
+                return false;
+            }
+            key = k;
+            value = (V) node.values[indexes[leaf]];
+            indexes[leaf]++;
+            positioned = true;
+            return true;
+        }
+
+        public K getKey() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return key;
+        }
+
+        public V getValue() {
+            if (!positioned) {
+                throw new NoSuchElementException();
+            }
+            return value;
+        }
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 读取当前版本，与写操作互斥；需要无锁读取时使用快照
+     */
+    public synchronized V get(K key) {
+        return root.get(key);
+    }
+
+    /**
+     * 获取当前版本的只读快照
+     */
+    public synchronized Snapshot<K, V> snapshot() {
+        long snapshotEpoch = epoch++;
+        Integer count = openSnapshots.get(snapshotEpoch);
+        openSnapshots.put(snapshotEpoch, count == null ? 1 : count + 1);
+        sharedEpoch = snapshotEpoch;
+        return new Snapshot<K, V>(this, root, snapshotEpoch, height, size);
+    }
+
+    // 关闭快照，已持有当前对象的锁
+    private void release(long snapshotEpoch) {
+        Integer count = openSnapshots.get(snapshotEpoch);
+        if (count == 1) {
+            openSnapshots.remove(snapshotEpoch);
+        } else {
+            openSnapshots.put(snapshotEpoch, count - 1);
+        }
+        sharedEpoch = openSnapshots.isEmpty() ? -1 : openSnapshots.lastKey();
+    }
+
+    /**
+     * @return 当前未关闭的快照数
+     */
+    public synchronized int openSnapshotCount() {
+        int count = 0;
+        for (Integer c : openSnapshots.values()) {
+            count += c;
+        }
+        return count;
+    }
+
+    // 返回可以原地修改的节点：可能被快照共享时先复制
+    private Node<K, V> writable(Node<K, V> node) {
+        return node.epoch > sharedEpoch ? node : node.copy(epoch, order);
+    }
+
+    /**
+     * 插入或更新
+     *
+     * @return 原来与key关联的值，不存在时返回null
+     */
+    public synchronized V insertOrUpdate(K key, V value) {
+        oldValue = null;
+        splitRight = null;
+        Node<K, V> newRoot = insert(root, key, value);
+        //根节点分裂，生成新的根节点
+        if (splitRight != null) {
+            Node<K, V> parent = new Node<K, V>(false, epoch, order);
+            parent.keys[0] = splitKey;
+            parent.children[0] = newRoot;
+            parent.children[1] = splitRight;
+            parent.size = 1;
+            newRoot = parent;
+            splitRight = null;
+            height++;
+        }
+        root = newRoot;
+        return oldValue;
+    }
+
+    /**
+     * 删除
+     *
+     * @return 被删除的值，不存在时返回null
+     */
+    public synchronized V remove(K key) {
+        //不存在时不复制路径
+        if (root.get(key) == null) {
+            return null;
+        }
+        oldValue = null;
+        Node<K, V> newRoot = remove(root, key);
+        //根节点只剩一个子节点时与子节点合并
+        if (!newRoot.isLeaf && newRoot.size == 0) {
+            newRoot = newRoot.children[0];
+            height--;
+        }
+        root = newRoot;
+        return oldValue;
+    }
+
+    // 向子树插入，返回该子树可写的新根，分裂出的右节点放在 splitRight
+    private Node<K, V> insert(Node<K, V> node, K key, V value) {
+        node = writable(node);
+        if (node.isLeaf) {
+            int index = node.lowerBound(key);
+            if (index < node.size && ((K) node.keys[index]).compareTo(key) == 0) {
+                oldValue = (V) node.values[index];
+                node.values[index] = value;
+                return node;
+            }
+            System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+            System.arraycopy(node.values, index, node.values, index + 1, node.size - index);
+            node.keys[index] = key;
+            node.values[index] = value;
+            node.size++;
+            size++;
+            if (node.size > order) {
+                splitLeaf(node);
+            }
+            return node;
+        }
+        int index = node.childIndex(key);
+        node.children[index] = insert(node.children[index], key, value);
+        if (splitRight == null) {
+            return node;
+        }
+        System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+        System.arraycopy(node.children, index + 1, node.children, index + 2, node.size - index);
+        node.keys[index] = splitKey;
+        node.children[index + 1] = splitRight;
+        node.size++;
+        splitRight = null;
+        if (node.size + 1 > order) {
+            splitInternal(node);
+        }
+        return node;
+    }
+
+    private void splitLeaf(Node<K, V> left) {
+        int leftSize = (order + 1) / 2 + (order + 1) % 2;
+        Node<K, V> right = new Node<K, V>(true, epoch, order);
+        right.size = left.size - leftSize;
+        System.arraycopy(left.keys, leftSize, right.keys, 0, right.size);
+        System.arraycopy(left.values, leftSize, right.values, 0, right.size);
+        for (int i = leftSize; i < left.size; i++) {
+            left.keys[i] = null;
+            left.values[i] = null;
+        }
+        left.size = leftSize;
+        splitKey = (K) right.keys[0];
+        splitRight = right;
+    }
+
+    private void splitInternal(Node<K, V> left) {
+        int children = left.size + 1;
+        int leftChildren = children / 2 + children % 2;
+        Node<K, V> right = new Node<K, V>(false, epoch, order);
+        right.size = children - leftChildren - 1;
+        System.arraycopy(left.keys, leftChildren, right.keys, 0, right.size);
+        System.arraycopy(left.children, leftChildren, right.children, 0, right.size + 1);
+        splitKey = (K) left.keys[leftChildren - 1];
+        for (int i = leftChildren - 1; i < left.size; i++) {
+            left.keys[i] = null;
+            left.children[i + 1] = null;
+        }
+        left.size = leftChildren - 1;
+        splitRight = right;
+    }
+
+    // 从子树删除，返回该子树可写的新根；子节点下溢由父节点借补或合并
+    private Node<K, V> remove(Node<K, V> node, K key) {
+        node = writable(node);
+        if (node.isLeaf) {
+            int index = node.lowerBound(key);
+            if (index < node.size && ((K) node.keys[index]).compareTo(key) == 0) {
+                oldValue = (V) node.values[index];
+                System.arraycopy(node.keys, index + 1, node.keys, index, node.size - index - 1);
+                System.arraycopy(node.values, index + 1, node.values, index, node.size - index - 1);
+                node.size--;
+                node.keys[node.size] = null;
+                node.values[node.size] = null;
+                size--;
+            }
+            return node;
+        }
+        int index = node.childIndex(key);
+        Node<K, V> child = remove(node.children[index], key);
+        node.children[index] = child;
+        if (underflow(child)) {
+            rebalance(node, index);
+        }
+        return node;
+    }
+
+    private boolean underflow(Node<K, V> node) {
+        if (node.isLeaf) {
+            return node.size < order / 2;
+        }
+        return node.size + 1 < Math.max(2, (order + 1) / 2);
+    }
+
+    private boolean canLend(Node<K, V> node) {
+        if (node.isLeaf) {
+            return node.size > order / 2;
+        }
+        return node.size + 1 > Math.max(2, (order + 1) / 2);
+    }
+
+    // 第index个子节点不满足最小容量：先向左右兄弟借补，否则与兄弟合并；用到的兄弟节点同样需要可写
+    private void rebalance(Node<K, V> parent, int index) {
+        Node<K, V> child = parent.children[index];
+        Node<K, V> left = index > 0 ? parent.children[index - 1] : null;
+        Node<K, V> right = index < parent.size ? parent.children[index + 1] : null;
+        if (left != null && canLend(left)) {
+            left = writable(left);
+            parent.children[index - 1] = left;
+            borrowFromLeft(parent, index, left, child);
+        } else if (right != null && canLend(right)) {
+            right = writable(right);
+            parent.children[index + 1] = right;
+            borrowFromRight(parent, index, child, right);
+        } else if (left != null) {
+            left = writable(left);
+            parent.children[index - 1] = left;
+            merge(parent, index - 1, left, child);
+        } else if (right != null) {
+            merge(parent, index, child, right);
+        }
+    }
+
+    private void borrowFromLeft(Node<K, V> parent, int index, Node<K, V> left, Node<K, V> child) {
+        System.arraycopy(child.keys, 0, child.keys, 1, child.size);
+        if (child.isLeaf) {
+            System.arraycopy(child.values, 0, child.values, 1, child.size);
+            child.keys[0] = left.keys[left.size - 1];
+            child.values[0] = left.values[left.size - 1];
+            left.keys[left.size - 1] = null;
+            left.values[left.size - 1] = null;
+            parent.keys[index - 1] = child.keys[0];
+        } else {
+            System.arraycopy(child.children, 0, child.children, 1, child.size + 1);
+            child.keys[0] = parent.keys[index - 1];
+            child.children[0] = left.children[left.size];
+            parent.keys[index - 1] = left.keys[left.size - 1];
+            left.keys[left.size - 1] = null;
+            left.children[left.size] = null;
+        }
+        left.size--;
+        child.size++;
+    }
+
+    private void borrowFromRight(Node<K, V> parent, int index, Node<K, V> child, Node<K, V> right) {
+        if (child.isLeaf) {
+            child.keys[child.size] = right.keys[0];
+            child.values[child.size] = right.values[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+            System.arraycopy(right.values, 1, right.values, 0, right.size - 1);
+            right.keys[right.size - 1] = null;
+            right.values[right.size - 1] = null;
+            parent.keys[index] = right.keys[0];
+        } else {
+            child.keys[child.size] = parent.keys[index];
+            child.children[child.size + 1] = right.children[0];
+            parent.keys[index] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+            System.arraycopy(right.children, 1, right.children, 0, right.size);
+            right.keys[right.size - 1] = null;
+            right.children[right.size] = null;
+        }
+        right.size--;
+        child.size++;
+    }
+
+    // 把右节点并入左节点（左节点可写，右节点只读取），并删除父节点中第index个关键字
+    private void merge(Node<K, V> parent, int index, Node<K, V> left, Node<K, V> right) {
+        if (left.isLeaf) {
+            System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+            System.arraycopy(right.values, 0, left.values, left.size, right.size);
+            left.size += right.size;
+        } else {
+            left.keys[left.size] = parent.keys[index];
+            System.arraycopy(right.keys, 0, left.keys, left.size + 1, right.size);
+            System.arraycopy(right.children, 0, left.children, left.size + 1, right.size + 1);
+            left.size += right.size + 1;
+        }
+        System.arraycopy(parent.keys, index + 1, parent.keys, index, parent.size - index - 1);
+        System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.size - index - 1);
+        parent.size--;
+        parent.keys[parent.size] = null;
+        parent.children[parent.size + 1] = null;
+    }
+}
@@ -0,0 +1,616 @@
+package com.example.demo.structure.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * @ClassName DiskBPlusTree
+ * @Description: 基于页面的磁盘B+树
+ * 1.每个节点是文件中一个定长页面，第0页为文件头，保存根节点、叶子链表头、树高等元数据；
+ * 2.页面通过 FileChannel 按偏移读写，读入后解码为节点对象，放在容量固定的缓冲池中；
+ *   缓冲池满时按 CLOCK 算法淘汰未被固定（pin）的页面，脏页面淘汰前写回文件，
+ *   内存占用只取决于缓冲池大小，与数据量无关。不使用 MappedByteBuffer：映射区域不能随文件增长，
+ *   写回磁盘的时机也不受控制，无法保证下面第5点要求的写入顺序；
+ * 3.关键字和值通过 {@link Codec} 定长编码，阶数由页面大小和编码长度计算得到；
+ * 4.删除只从叶子节点中摘除关键字，不做借补与合并，空出的空间只由之后落在同一叶子节点的插入复用；
+ *   页面从不释放，变空的叶子节点仍留在叶子链表中，文件只增不减；
+ * 5.页面在原地覆盖写回，没有日志，文件只在 {@link #flush()} 之后是一致的。flush 先把所有脏页面写回并 force，
+ *   再写入标记为"已关闭"的文件头并 force，{@link #close()} 时自动调用；flush 之后第一次写回页面前，
+ *   先把文件头标记为"未关闭"并 force。打开时文件头不是"已关闭"的，说明上次没有 flush 就崩溃了，
+ *   页面可能新旧混杂，直接抛出 IOException，不会读出与根节点不一致的页面。
+ *
+ * 非线程安全。
+ *
+ * 页面格式：
+ * <pre>
+ *     叶子节点：   [type:1][size:4][next:8] [key][value] * size
+ *     非叶子节点： [type:1][size:4][unused:8] [child:8] ([key][child:8]) * size
+ *     文件头：     [magic:4][version:4][pageSize:4][keySize:4][valueSize:4]
+ *                 [root:8][head:8][height:4][pageCount:8][size:8][clean:1]
+ * </pre>
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@SuppressWarnings("unchecked")
+public class DiskBPlusTree<K extends Comparable<K>, V> implements Closeable {
+
+    // 文件头魔数 "BPLT"
+    private static final int MAGIC = 0x42504C54;
+
+    private static final int VERSION = 2;
+
+    private static final byte LEAF = 1;
+
+    private static final byte INTERNAL = 2;
+
+    // 页面头长度：type + size + next
+    private static final int PAGE_HEADER = 1 + 4 + 8;
+
+    // 页号0为文件头，也用作空指针
+    private static final long NULL_PAGE = 0;
+
+    private final FileChannel channel;
+
+    private final int pageSize;
+
+    private final Codec<K> keyCodec;
+
+    private final Codec<V> valueCodec;
+
+    // 叶子节点最多保存的关键字数
+    private final int leafOrder;
+
+    // 非叶子节点最多的子节点数
+    private final int internalOrder;
+
+    private final BufferPool pool;
+
+    private long rootId;
+
+    // 叶子节点的链表头
+    private long headId;
+
+    // 树高，只有一个叶子节点时为1
+    private int height;
+
+    // 已分配的页面数，包括文件头
+    private long pageCount;
+
+    // 关键字个数
+    private long size;
+
+    // 磁盘上的文件头是否标记为"已关闭"，即上次 flush 之后还没有写回过页面
+    private boolean clean;
+
+    // 节点分裂时上推到父节点的关键字
+    private K splitKey;
+
+    // 最近一次插入或删除前与关键字关联的值
+    private V oldValue;
+
+    /**
+     * 打开或创建磁盘B+树
+     *
+     * @param path       数据文件
+     * @param pageSize   页面大小，打开已有文件时必须与文件中的一致
+     * @param poolPages  缓冲池可缓存的页面数
+     */
+    public DiskBPlusTree(Path path, int pageSize, int poolPages,
+                         Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this.pageSize = pageSize;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.leafOrder = (pageSize - PAGE_HEADER) / (keyCodec.size() + valueCodec.size());
+        this.internalOrder = (pageSize - PAGE_HEADER - 8) / (keyCodec.size() + 8) + 1;
+        if (leafOrder < 3 || internalOrder < 3) {
+            throw new IllegalArgumentException("page size " + pageSize + " too small for key/value codec");
+        }
+        if (poolPages < 8) {
+            throw new IllegalArgumentException("pool must hold at least 8 pages");
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pool = new BufferPool(poolPages);
+        if (channel.size() == 0) {
+            pageCount = 1;
+            Node root = pool.allocate(true);
+            rootId = root.pageId;
+            headId = root.pageId;
+            height = 1;
+            pool.unpin(root);
+            flush();
+        } else {
+            readHeader();
+        }
+    }
+
+    // 解码后的页面，同时也是缓冲池中的一帧
+    private final class Node {
+
+        final long pageId;
+
+        final boolean isLeaf;
+
+        int size;
+
+        final Object[] keys;
+
+        final Object[] values;
+
+        final long[] children;
+
+        // 叶节点的后节点页号
+        long next;
+
+        // 被固定的次数，大于0时不能被淘汰
+        int pinCount;
+
+        // 是否被修改过
+        boolean dirty;
+
+        // CLOCK 访问位
+        boolean referenced;
+
+        Node(long pageId, boolean isLeaf) {
+            this.pageId = pageId;
+            this.isLeaf = isLeaf;
+            if (isLeaf) {
+                keys = new Object[leafOrder + 1];
+                values = new Object[leafOrder + 1];
+                children = null;
+            } else {
+                keys = new Object[internalOrder];
+                values = null;
+                children = new long[internalOrder + 1];
+            }
+        }
+
+        // 第一个大于等于key的位置
+        int lowerBound(K key) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (((K) keys[mid]).compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        // 关键字中小于等于key的个数
+        int childIndex(K key) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (((K) keys[mid]).compareTo(key) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.clear();
+            buffer.put(isLeaf ? LEAF : INTERNAL);
+            buffer.putInt(size);
+            buffer.putLong(next);
+            if (isLeaf) {
+                for (int i = 0; i < size; i++) {
+                    keyCodec.encode(buffer, (K) keys[i]);
+                    valueCodec.encode(buffer, (V) values[i]);
+                }
+            } else {
+                buffer.putLong(children[0]);
+                for (int i = 0; i < size; i++) {
+                    keyCodec.encode(buffer, (K) keys[i]);
+                    buffer.putLong(children[i + 1]);
+                }
+            }
+            buffer.clear();
+        }
+
+        void read(ByteBuffer buffer) {
+            size = buffer.getInt();
+            next = buffer.getLong();
+            if (isLeaf) {
+                for (int i = 0; i < size; i++) {
+                    keys[i] = keyCodec.decode(buffer);
+                    values[i] = valueCodec.decode(buffer);
+                }
+            } else {
+                children[0] = buffer.getLong();
+                for (int i = 0; i < size; i++) {
+                    keys[i] = keyCodec.decode(buffer);
+                    children[i + 1] = buffer.getLong();
+                }
+            }
+        }
+    }
+
+    /**
+     * 固定容量的页面缓冲池，CLOCK 淘汰
+     */
+    private final class BufferPool {
+
+        private final Node[] frames;
+
+        // 页号 -> 帧下标
+        private final Map<Long, Integer> pageTable = new HashMap<Long, Integer>();
+
+        // CLOCK 指针
+        private int hand;
+
+        // 页面读写缓冲区
+        private final ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+
+        BufferPool(int capacity) {
+            frames = new DiskBPlusTree.Node[capacity];
+        }
+
+        // 读取并固定页面
+        Node fetch(long pageId) {
+            Integer frame = pageTable.get(pageId);
+            if (frame != null) {
+                Node node = frames[frame];
+                node.pinCount++;
+                node.referenced = true;
+                return node;
+            }
+            try {
+                buffer.clear();
+                long position = pageId * pageSize;
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new IOException("unexpected end of file at page " + pageId);
+                    }
+                }
+                buffer.flip();
+                Node node = new Node(pageId, buffer.get() == LEAF);
+                node.read(buffer);
+                return install(node);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // 分配新页面并固定，新页面为脏页面
+        Node allocate(boolean isLeaf) {
+            Node node = new Node(pageCount++, isLeaf);
+            node.dirty = true;
+            return install(node);
+        }
+
+        void unpin(Node node) {
+            node.pinCount--;
+        }
+
+        private Node install(Node node) {
+            int frame = victim();
+            frames[frame] = node;
+            pageTable.put(node.pageId, frame);
+            node.pinCount = 1;
+            node.referenced = true;
+            return node;
+        }
+
+        // CLOCK：跳过被固定的帧，清除访问位后第二次经过时淘汰
+        private int victim() {
+            for (int i = 0; i < frames.length * 2; i++) {
+                int frame = hand;
+                hand = (hand + 1) % frames.length;
+                Node node = frames[frame];
+                if (node == null) {
+                    return frame;
+                }
+                if (node.pinCount > 0) {
+                    continue;
+                }
+                if (node.referenced) {
+                    node.referenced = false;
+                    continue;
+                }
+                if (node.dirty) {
+                    writeBack(node);
+                }
+                pageTable.remove(node.pageId);
+                frames[frame] = null;
+                return frame;
+            }
+            throw new IllegalStateException("all " + frames.length + " buffer pool pages are pinned");
+        }
+
+        void writeBack(Node node) {
+            try {
+                if (clean) {
+                    //覆盖页面前先让文件头失效，崩溃后打开时能发现文件不一致
+                    writeHeader(false);
+                    channel.force(true);
+                }
+                node.write(buffer);
+                long position = node.pageId * pageSize;
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, position + buffer.position());
+                }
+                node.dirty = false;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void flushAll() {
+            for (Node node : frames) {
+                if (node != null && node.dirty) {
+                    writeBack(node);
+                }
+            }
+        }
+    }
+
+    public int getLeafOrder() {
+        return leafOrder;
+    }
+
+    public int getInternalOrder() {
+        return internalOrder;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public V get(K key) {
+        Node node = pool.fetch(rootId);
+        while (!node.isLeaf) {
+            long child = node.children[node.childIndex(key)];
+            pool.unpin(node);
+            node = pool.fetch(child);
+        }
+        try {
+            int index = node.lowerBound(key);
+            if (index < node.size && ((K) node.keys[index]).compareTo(key) == 0) {
+                return (V) node.values[index];
+            }
+            return null;
+        } finally {
+            pool.unpin(node);
+        }
+    }
+
+    /**
+     * 按关键字升序遍历区间 [from, to)，null表示该方向不设边界
+     */
+    public void scan(K from, K to, BiConsumer<? super K, ? super V> consumer) {
+        Node node = pool.fetch(from == null ? headId : rootId);
+        while (!node.isLeaf) {
+            long child = node.children[node.childIndex(from)];
+            pool.unpin(node);
+            node = pool.fetch(child);
+        }
+        int index = from == null ? 0 : node.lowerBound(from);
+        for (;;) {
+            for (; index < node.size; index++) {
+                K key = (K) node.keys[index];
+                if (to != null && key.compareTo(to) >= 0) {
+                    pool.unpin(node);
+                    return;
+                }
+                consumer.accept(key, (V) node.values[index]);
+            }
+            long next = node.next;
+            pool.unpin(node);
+            if (next == NULL_PAGE) {
+                return;
+            }
+            node = pool.fetch(next);
+            index = 0;
+        }
+    }
+
+    /**
+     * 插入或更新
+     *
+     * @return 原来与key关联的值，不存在时返回null
+     */
+    public V insertOrUpdate(K key, V value) {
+        oldValue = null;
+        Node right = insert(rootId, key, value);
+        //根节点分裂，生成新的根节点
+        if (right != null) {
+            Node parent = pool.allocate(false);
+            parent.keys[0] = splitKey;
+            parent.children[0] = rootId;
+            parent.children[1] = right.pageId;
+            parent.size = 1;
+            rootId = parent.pageId;
+            height++;
+            pool.unpin(parent);
+            pool.unpin(right);
+        }
+        return oldValue;
+    }
+
+    /**
+     * 删除
+     *
+     * @return 被删除的值，不存在时返回null
+     */
+    public V remove(K key) {
+        Node node = pool.fetch(rootId);
+        while (!node.isLeaf) {
+            long child = node.children[node.childIndex(key)];
+            pool.unpin(node);
+            node = pool.fetch(child);
+        }
+        try {
+            int index = node.lowerBound(key);
+            if (index == node.size || ((K) node.keys[index]).compareTo(key) != 0) {
+                return null;
+            }
+            V old = (V) node.values[index];
+            System.arraycopy(node.keys, index + 1, node.keys, index, node.size - index - 1);
+            System.arraycopy(node.values, index + 1, node.values, index, node.size - index - 1);
+            node.size--;
+            node.keys[node.size] = null;
+            node.values[node.size] = null;
+            node.dirty = true;
+            size--;
+            return old;
+        } finally {
+            pool.unpin(node);
+        }
+    }
+
+    // 向子树插入，节点分裂时返回分裂出的右节点（已固定，由调用方解除固定）
+    private Node insert(long pageId, K key, V value) {
+        Node node = pool.fetch(pageId);
+        try {
+            if (node.isLeaf) {
+                int index = node.lowerBound(key);
+                node.dirty = true;
+                if (index < node.size && ((K) node.keys[index]).compareTo(key) == 0) {
+                    oldValue = (V) node.values[index];
+                    node.values[index] = value;
+                    return null;
+                }
+                System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+                System.arraycopy(node.values, index, node.values, index + 1, node.size - index);
+                node.keys[index] = key;
+                node.values[index] = value;
+                node.size++;
+                size++;
+                return node.size > leafOrder ? splitLeaf(node) : null;
+            }
+            int index = node.childIndex(key);
+            Node right = insert(node.children[index], key, value);
+            if (right == null) {
+                return null;
+            }
+            System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+            System.arraycopy(node.children, index + 1, node.children, index + 2, node.size - index);
+            node.keys[index] = splitKey;
+            node.children[index + 1] = right.pageId;
+            node.size++;
+            node.dirty = true;
+            pool.unpin(right);
+            return node.size + 1 > internalOrder ? splitInternal(node) : null;
+        } finally {
+            pool.unpin(node);
+        }
+    }
+
+    private Node splitLeaf(Node left) {
+        int leftSize = (leafOrder + 1) / 2 + (leafOrder + 1) % 2;
+        Node right = pool.allocate(true);
+        right.size = left.size - leftSize;
+        System.arraycopy(left.keys, leftSize, right.keys, 0, right.size);
+        System.arraycopy(left.values, leftSize, right.values, 0, right.size);
+        Arrays.fill(left.keys, leftSize, left.size, null);
+        Arrays.fill(left.values, leftSize, left.size, null);
+        left.size = leftSize;
+        right.next = left.next;
+        left.next = right.pageId;
+        splitKey = (K) right.keys[0];
+        return right;
+    }
+
+    private Node splitInternal(Node left) {
+        int children = left.size + 1;
+        int leftChildren = children / 2 + children % 2;
+        Node right = pool.allocate(false);
+        right.size = children - leftChildren - 1;
+        System.arraycopy(left.keys, leftChildren, right.keys, 0, right.size);
+        System.arraycopy(left.children, leftChildren, right.children, 0, right.size + 1);
+        splitKey = (K) left.keys[leftChildren - 1];
+        Arrays.fill(left.keys, leftChildren - 1, left.size, null);
+        left.size = leftChildren - 1;
+        return right;
+    }
+
+    /**
+     * 把所有脏页面和文件头写回磁盘，之后文件是一致的
+     */
+    public void flush() throws IOException {
+        try {
+            pool.flushAll();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        //页面落盘后才能写入"已关闭"的文件头
+        channel.force(true);
+        writeHeader(true);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeHeader(boolean clean) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(pageSize);
+        buffer.putInt(keyCodec.size());
+        buffer.putInt(valueCodec.size());
+        buffer.putLong(rootId);
+        buffer.putLong(headId);
+        buffer.putInt(height);
+        buffer.putLong(pageCount);
+        buffer.putLong(size);
+        buffer.put(clean ? (byte) 1 : 0);
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        this.clean = clean;
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new IOException("truncated file header");
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("not a B+ tree file");
+        }
+        if (buffer.getInt() != pageSize || buffer.getInt() != keyCodec.size()
+                || buffer.getInt() != valueCodec.size()) {
+            throw new IOException("page size or codec does not match the file");
+        }
+        rootId = buffer.getLong();
+        headId = buffer.getLong();
+        height = buffer.getInt();
+        pageCount = buffer.getLong();
+        size = buffer.getLong();
+        if (buffer.get() != 1) {
+            throw new IOException("file was not flushed before the last shutdown and may be inconsistent");
+        }
+        clean = true;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo.structure.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+
+/**
+ * @ClassName DurableBPlusTree
+ * @Description: 带预写日志的持久化B+树
+ * 1.每次 insertOrUpdate / remove 先向 {@link WriteAheadLog} 追加记录，再修改内存中的 {@link BPlusTree}，
+ *   等待记录落盘后才返回；多个线程并发写入时由日志组提交，一次 fsync 确认一批写入；
+ * 2.追加记录失败（如编码出错）时不修改树；刷盘失败时按相反顺序撤销所有尚未落盘的修改，
+ *   之后日志不再可用，写入和检查点都抛出 IOException，需要重新打开以从磁盘恢复；
+ * 3.{@link #checkpoint()} 把整棵树写入 {@link BPlusTreeFile} 格式的检查点文件（先写临时文件、force 后原子替换），
+ *   然后清空日志；日志超过阈值时自动做检查点；
+ * 4.打开时先加载最近一次检查点（批量构建），再重放日志，恢复到最后一次确认的写入。
+ *
+ * 读操作可能看到尚未落盘的写入，但写操作返回时一定已经持久化，抛出异常的写入不会留在树中。
+ *
+ * 目录结构：
+ * <pre>
+ *     dir/checkpoint   检查点，格式见 {@link BPlusTreeFile}
+ *     dir/wal.log      预写日志
+ * </pre>
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public class DurableBPlusTree<K extends Comparable<K>, V> implements Closeable {
+
+    // 默认在日志超过 64MB 时做检查点
+    private static final long DEFAULT_CHECKPOINT_BYTES = 64L * 1024 * 1024;
+
+    private final Path checkpointFile;
+
+    private final int order;
+
+    private final Codec<K> keyCodec;
+
+    private final Codec<V> valueCodec;
+
+    private final WriteAheadLog<K, V> log;
+
+    private BPlusTree<K, V> tree;
+
+    // 日志超过该大小时自动做检查点
+    private long checkpointBytes = DEFAULT_CHECKPOINT_BYTES;
+
+    // 已修改树但尚未确认落盘的写入，按日志序号递增，刷盘失败时用来撤销
+    private final ArrayDeque<Undo<K, V>> undoLog = new ArrayDeque<Undo<K, V>>();
+
+    /**
+     * 打开目录中的持久化B+树，目录不存在时创建
+     */
+    public DurableBPlusTree(Path dir, int order, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        Files.createDirectories(dir);
+        this.checkpointFile = dir.resolve("checkpoint");
+        this.order = order;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.tree = loadCheckpoint();
+        this.log = new WriteAheadLog<K, V>(dir.resolve("wal.log"), keyCodec, valueCodec);
+        log.replay((key, value) -> tree.insertOrUpdate(key, value), (key, value) -> tree.remove(key));
+    }
+
+    public void setCheckpointBytes(long checkpointBytes) {
+        this.checkpointBytes = checkpointBytes;
+    }
+
+    public synchronized V get(K key) {
+        return tree.get(key);
+    }
+
+    /**
+     * 撤销一次写入所需的信息：关键字和写入前的值
+     */
+    private static final class Undo<K, V> {
+
+        private final long lsn;
+
+        private final K key;
+
+        // 写入前的值，null表示原来不存在
+        private final V old;
+
+        Undo(long lsn, K key, V old) {
+            this.lsn = lsn;
+            this.key = key;
+            this.old = old;
+        }
+    }
+
+    /**
+     * 插入或更新，返回时该写入已经落盘
+     */
+    public void insertOrUpdate(K key, V value) throws IOException {
+        long lsn;
+        synchronized (this) {
+            log.checkFailure();
+            //先追加日志，编码失败时树保持不变
+            lsn = log.appendPut(key, value);
+            V old = tree.get(key);
+            tree.insertOrUpdate(key, value);
+            undoLog.addLast(new Undo<K, V>(lsn, key, old));
+        }
+        commit(lsn);
+        checkpointIfNeeded();
+    }
+
+    /**
+     * 删除，返回时该删除已经落盘
+     *
+     * @return 被删除的值，不存在时返回null
+     */
+    public V remove(K key) throws IOException {
+        long lsn;
+        V old;
+        synchronized (this) {
+            log.checkFailure();
+            old = tree.get(key);
+            if (old == null) {
+                return null;
+            }
+            lsn = log.appendRemove(key);
+            tree.remove(key);
+            undoLog.addLast(new Undo<K, V>(lsn, key, old));
+        }
+        commit(lsn);
+        checkpointIfNeeded();
+        return old;
+    }
+
+    /**
+     * 等待 lsn 落盘。中断时继续等待，记录已在日志缓冲区中，之后总会由某个 leader 刷盘，
+     * 此时返回失败会让调用方误以为写入没有生效
+     */
+    private void commit(long lsn) throws IOException {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    log.sync(lsn);
+                    break;
+                } catch (InterruptedIOException e) {
+                    //清除中断状态后继续等待，返回前恢复
+                    Thread.interrupted();
+                    interrupted = true;
+                }
+            }
+        } catch (IOException e) {
+            rollback();
+            throw e;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            while (!undoLog.isEmpty() && undoLog.peekFirst().lsn <= lsn) {
+                undoLog.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * 刷盘失败后日志序号不再前进，撤销所有序号大于已落盘序号的修改，树回到最后一次确认的状态
+     */
+    private synchronized void rollback() {
+        long durable = log.durableLsn();
+        while (!undoLog.isEmpty() && undoLog.peekLast().lsn > durable) {
+            Undo<K, V> undo = undoLog.removeLast();
+            if (undo.old == null) {
+                tree.remove(undo.key);
+            } else {
+                tree.insertOrUpdate(undo.key, undo.old);
+            }
+        }
+    }
+
+    private void checkpointIfNeeded() throws IOException {
+        if (log.size() > checkpointBytes) {
+            synchronized (this) {
+                if (log.size() > checkpointBytes) {
+                    checkpoint();
+                }
+            }
+        }
+    }
+
+    /**
+     * 把整棵树写入检查点文件并清空日志。日志刷盘失败后拒绝执行，避免把调用方已收到失败的写入写进检查点
+     */
+    public synchronized void checkpoint() throws IOException {
+        log.checkFailure();
+        BPlusTreeFile.save(tree, checkpointFile, keyCodec, valueCodec);
+        log.truncate();
+    }
+
+    private BPlusTree<K, V> loadCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return new BPlusTree<K, V>(order);
+        }
+        return BPlusTreeFile.load(checkpointFile, order, keyCodec, valueCodec);
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
@@ -0,0 +1,376 @@
+package com.example.demo.structure.tree;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName LongBPlusTree
+ * @Description: 关键字为 long 的B+树
+ * 与 {@link BPlusTree} 的定义相同，区别在于节点用 long[] 保存关键字，用平行数组保存值和子节点，
+ * 关键字不装箱，二分查找直接比较基本类型，每个关键字只占 8 字节，且同一节点的关键字在内存中连续。
+ * int 关键字无损拓宽为 long 后直接使用，不单独提供 int 版本，避免维护两份相同的代码。
+ *
+ * 阶数为 M 时：
+ * 1.叶子节点最多保存 M 个关键字，非根叶子节点至少保存 M/2 个关键字；
+ * 2.非叶子节点最多有 M 个子节点，非根非叶子节点至少有 (M+1)/2 个子节点；
+ * 3.叶子节点之间通过 previous / next 链接。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@SuppressWarnings("unchecked")
+public class LongBPlusTree<V> {
+
+    // 根节点
+    private Node<V> root;
+
+    // 阶数，M值
+    private final int order;
+
+    // 树高，只有一个叶子节点时为1
+    private int height = 1;
+
+    // 关键字个数
+    private int size;
+
+    // 节点分裂时上推到父节点的关键字
+    private long splitKey;
+
+    // 最近一次插入或删除前与关键字关联的值
+    private Object oldValue;
+
+    public LongBPlusTree(int order) {
+        if (order < 3) {
+            throw new IllegalArgumentException("order must be greater than 2");
+        }
+        this.order = order;
+        root = new Node<V>(true, order);
+    }
+
+    static final class Node<V> {
+
+        // 是否为叶子节点
+        final boolean isLeaf;
+
+        // 关键字个数
+        int size;
+
+        // 关键字，多预留一个位置用于分裂前的溢出
+        final long[] keys;
+
+        // 叶子节点的值，与keys一一对应
+        final Object[] values;
+
+        // 非叶子节点的子节点，个数为 size + 1
+        final Node<V>[] children;
+
+        // 叶节点的前节点
+        Node<V> previous;
+
+        // 叶节点的后节点
+        Node<V> next;
+
+        Node(boolean isLeaf, int order) {
+            this.isLeaf = isLeaf;
+            this.keys = new long[order + 1];
+            if (isLeaf) {
+                values = new Object[order + 1];
+                children = null;
+            } else {
+                values = null;
+                children = new Node[order + 1];
+            }
+        }
+
+        // 第一个大于等于key的位置
+        int lowerBound(long key) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        // 关键字中小于等于key的个数，即应沿其继续搜索的子节点位置
+        int childIndex(long key) {
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] <= key) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public V get(long key) {
+        Node<V> node = root;
+        while (!node.isLeaf) {
+            node = node.children[node.childIndex(key)];
+        }
+        int index = node.lowerBound(key);
+        if (index < node.size && node.keys[index] == key) {
+            return (V) node.values[index];
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        Node<V> node = root;
+        while (!node.isLeaf) {
+            node = node.children[node.childIndex(key)];
+        }
+        int index = node.lowerBound(key);
+        return index < node.size && node.keys[index] == key;
+    }
+
+    /**
+     * 插入或更新
+     *
+     * @return 原来与key关联的值，不存在时返回null
+     */
+    public V insertOrUpdate(long key, V value) {
+        oldValue = null;
+        Node<V> right = insert(root, key, value);
+        //根节点分裂，生成新的根节点
+        if (right != null) {
+            Node<V> parent = new Node<V>(false, order);
+            parent.keys[0] = splitKey;
+            parent.children[0] = root;
+            parent.children[1] = right;
+            parent.size = 1;
+            root = parent;
+            height++;
+        }
+        return (V) oldValue;
+    }
+
+    /**
+     * 删除
+     *
+     * @return 被删除的值，不存在时返回null
+     */
+    public V remove(long key) {
+        oldValue = null;
+        remove(root, key);
+        //根节点只剩一个子节点时与子节点合并
+        if (!root.isLeaf && root.size == 0) {
+            root = root.children[0];
+            height--;
+        }
+        return (V) oldValue;
+    }
+
+    // 向子树插入，节点分裂时返回分裂出的右节点
+    private Node<V> insert(Node<V> node, long key, V value) {
+        if (node.isLeaf) {
+            int index = node.lowerBound(key);
+            if (index < node.size && node.keys[index] == key) {
+                oldValue = node.values[index];
+                node.values[index] = value;
+                return null;
+            }
+            System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+            System.arraycopy(node.values, index, node.values, index + 1, node.size - index);
+            node.keys[index] = key;
+            node.values[index] = value;
+            node.size++;
+            size++;
+            return node.size > order ? splitLeaf(node) : null;
+        }
+        int index = node.childIndex(key);
+        Node<V> right = insert(node.children[index], key, value);
+        if (right == null) {
+            return null;
+        }
+        System.arraycopy(node.keys, index, node.keys, index + 1, node.size - index);
+        System.arraycopy(node.children, index + 1, node.children, index + 2, node.size - index);
+        node.keys[index] = splitKey;
+        node.children[index + 1] = right;
+        node.size++;
+        return node.size + 1 > order ? splitInternal(node) : null;
+    }
+
+    private Node<V> splitLeaf(Node<V> left) {
+        int leftSize = (order + 1) / 2 + (order + 1) % 2;
+        Node<V> right = new Node<V>(true, order);
+        right.size = left.size - leftSize;
+        System.arraycopy(left.keys, leftSize, right.keys, 0, right.size);
+        System.arraycopy(left.values, leftSize, right.values, 0, right.size);
+        Arrays.fill(left.values, leftSize, left.size, null);
+        left.size = leftSize;
+        splitKey = right.keys[0];
+        //设置链接
+        right.next = left.next;
+        if (left.next != null) {
+            left.next.previous = right;
+        }
+        right.previous = left;
+        left.next = right;
+        return right;
+    }
+
+    private Node<V> splitInternal(Node<V> left) {
+        int children = left.size + 1;
+        int leftChildren = children / 2 + children % 2;
+        Node<V> right = new Node<V>(false, order);
+        right.size = children - leftChildren - 1;
+        System.arraycopy(left.keys, leftChildren, right.keys, 0, right.size);
+        System.arraycopy(left.children, leftChildren, right.children, 0, right.size + 1);
+        Arrays.fill(left.children, leftChildren, children, null);
+        left.size = leftChildren - 1;
+        splitKey = left.keys[left.size];
+        return right;
+    }
+
+    // 从子树删除，返回时由父节点处理该子树根节点的下溢
+    private void remove(Node<V> node, long key) {
+        if (node.isLeaf) {
+            int index = node.lowerBound(key);
+            if (index < node.size && node.keys[index] == key) {
+                oldValue = node.values[index];
+                System.arraycopy(node.keys, index + 1, node.keys, index, node.size - index - 1);
+                System.arraycopy(node.values, index + 1, node.values, index, node.size - index - 1);
+                node.size--;
+                node.values[node.size] = null;
+                size--;
+            }
+            return;
+        }
+        int index = node.childIndex(key);
+        Node<V> child = node.children[index];
+        remove(child, key);
+        if (underflow(child)) {
+            rebalance(node, index);
+        }
+    }
+
+    private boolean underflow(Node<V> node) {
+        if (node.isLeaf) {
+            return node.size < order / 2;
+        }
+        return node.size + 1 < Math.max(2, (order + 1) / 2);
+    }
+
+    private boolean canLend(Node<V> node) {
+        if (node.isLeaf) {
+            return node.size > order / 2;
+        }
+        return node.size + 1 > Math.max(2, (order + 1) / 2);
+    }
+
+    // 第index个子节点不满足最小容量：先向左右兄弟借补，否则与兄弟合并
+    private void rebalance(Node<V> parent, int index) {
+        Node<V> child = parent.children[index];
+        Node<V> left = index > 0 ? parent.children[index - 1] : null;
+        Node<V> right = index < parent.size ? parent.children[index + 1] : null;
+        if (left != null && canLend(left)) {
+            borrowFromLeft(parent, index, left, child);
+        } else if (right != null && canLend(right)) {
+            borrowFromRight(parent, index, child, right);
+        } else if (left != null) {
+            merge(parent, index - 1, left, child);
+        } else if (right != null) {
+            merge(parent, index, child, right);
+        }
+    }
+
+    private void borrowFromLeft(Node<V> parent, int index, Node<V> left, Node<V> child) {
+        System.arraycopy(child.keys, 0, child.keys, 1, child.size);
+        if (child.isLeaf) {
+            System.arraycopy(child.values, 0, child.values, 1, child.size);
+            child.keys[0] = left.keys[left.size - 1];
+            child.values[0] = left.values[left.size - 1];
+            left.values[left.size - 1] = null;
+            parent.keys[index - 1] = child.keys[0];
+        } else {
+            System.arraycopy(child.children, 0, child.children, 1, child.size + 1);
+            child.keys[0] = parent.keys[index - 1];
+            child.children[0] = left.children[left.size];
+            left.children[left.size] = null;
+            parent.keys[index - 1] = left.keys[left.size - 1];
+        }
+        left.size--;
+        child.size++;
+    }
+
+    private void borrowFromRight(Node<V> parent, int index, Node<V> child, Node<V> right) {
+        if (child.isLeaf) {
+            child.keys[child.size] = right.keys[0];
+            child.values[child.size] = right.values[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+            System.arraycopy(right.values, 1, right.values, 0, right.size - 1);
+            right.values[right.size - 1] = null;
+            parent.keys[index] = right.keys[0];
+        } else {
+            child.keys[child.size] = parent.keys[index];
+            child.children[child.size + 1] = right.children[0];
+            parent.keys[index] = right.keys[0];
+            System.arraycopy(right.keys, 1, right.keys, 0, right.size - 1);
+            System.arraycopy(right.children, 1, right.children, 0, right.size);
+            right.children[right.size] = null;
+        }
+        right.size--;
+        child.size++;
+    }
+
+    // 把右节点并入左节点，并删除父节点中第index个关键字
+    private void merge(Node<V> parent, int index, Node<V> left, Node<V> right) {
+        if (left.isLeaf) {
+            System.arraycopy(right.keys, 0, left.keys, left.size, right.size);
+            System.arraycopy(right.values, 0, left.values, left.size, right.size);
+            left.size += right.size;
+            //更新链表
+            left.next = right.next;
+            if (right.next != null) {
+                right.next.previous = left;
+            }
+        } else {
+            left.keys[left.size] = parent.keys[index];
+            System.arraycopy(right.keys, 0, left.keys, left.size + 1, right.size);
+            System.arraycopy(right.children, 0, left.children, left.size + 1, right.size + 1);
+            left.size += right.size + 1;
+        }
+        System.arraycopy(parent.keys, index + 1, parent.keys, index, parent.size - index - 1);
+        System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.size - index - 1);
+        parent.size--;
+        parent.children[parent.size + 1] = null;
+    }
+
+    public void printBPlusTree() {
+        print(root, 0);
+    }
+
+    private void print(Node<V> node, int index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("层级：").append(index).append(node.isLeaf ? ",叶子节点，keys为: " : ",非叶子节点，keys为: ");
+        for (int i = 0; i < node.size; i++) {
+            sb.append(node.keys[i]).append(' ');
+        }
+        System.out.println(sb);
+        if (!node.isLeaf) {
+            for (int i = 0; i <= node.size; i++) {
+                print(node.children[i], index + 1);
+            }
+        }
+    }
+}
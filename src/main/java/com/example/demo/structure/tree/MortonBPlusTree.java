@@ -0,0 +1,89 @@
+package com.example.demo.structure.tree;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * @ClassName MortonBPlusTree
+ * @Description: 以 {@link MortonKey} 为关键字的B+树，支持二维矩形查询：
+ * 1.矩形 [minX, maxX] x [minY, maxY] 内的点都落在 z 区间 [z(minX, minY), z(maxX, maxY)] 内；
+ * 2.沿叶子节点链表扫描该区间，遇到矩形外的点时用 BIGMIN 求出下一个可能落在矩形内的 z 值并跳过去：
+ * 目标仍在当前叶子节点内时只在节点内二分查找，否则从根节点重新下降；
+ * 3.矩形因此被分解为少量连续的关键字区间，不需要单独的空间索引。
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public class MortonBPlusTree<V> extends BPlusTree<MortonKey, V> {
+
+    public MortonBPlusTree(int order) {
+        super(order);
+    }
+
+    public void insertOrUpdate(int x, int y, V value) {
+        insertOrUpdate(MortonKey.of(x, y), value);
+    }
+
+    public V get(int x, int y) {
+        return get(MortonKey.of(x, y));
+    }
+
+    /**
+     * 矩形（含边界）内的所有点，按 z 值升序
+     */
+    public List<Map.Entry<MortonKey, V>> box(int minX, int minY, int maxX, int maxY) {
+        List<Map.Entry<MortonKey, V>> result = new ArrayList<Map.Entry<MortonKey, V>>();
+        scanBox(minX, minY, maxX, maxY,
+                (key, value) -> result.add(new AbstractMap.SimpleImmutableEntry<MortonKey, V>(key, value)));
+        return result;
+    }
+
+    /**
+     * 按 z 值升序遍历矩形（含边界）内的所有点。遍历期间树不能被修改
+     *
+     * @return 为跳过矩形外的区间而重新定位的次数
+     */
+    public int scanBox(int minX, int minY, int maxX, int maxY, BiConsumer<? super MortonKey, ? super V> action) {
+        if (minX > maxX || minY > maxY) {
+            return 0;
+        }
+        long zMin = MortonKey.of(minX, minY).getZ();
+        long zMax = MortonKey.of(maxX, maxY).getZ();
+        MortonKey start = MortonKey.ofZ(zMin);
+        BPlusNode<MortonKey, V> leaf = root.findLeaf(start);
+        int index = leaf.lowerBound(start);
+        int jumps = 0;
+        while (leaf != null) {
+            List<Map.Entry<MortonKey, V>> entries = leaf.entries;
+            if (index >= entries.size()) {
+                leaf = leaf.next;
+                index = 0;
+                continue;
+            }
+            Map.Entry<MortonKey, V> entry = entries.get(index);
+            MortonKey key = entry.getKey();
+            if (Long.compareUnsigned(key.getZ(), zMax) > 0) {
+                break;
+            }
+            int x = key.getX();
+            int y = key.getY();
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                if (entry.getValue() != BPlusNode.TOMBSTONE) {
+                    action.accept(key, entry.getValue());
+                }
+                index++;
+                continue;
+            }
+            //跳到下一个可能落在矩形内的位置
+            MortonKey next = MortonKey.ofZ(MortonKey.bigMin(key.getZ(), zMin, zMax));
+            jumps++;
+            if (entries.get(entries.size() - 1).getKey().compareTo(next) < 0) {
+                leaf = root.findLeaf(next);
+            }
+            index = leaf.lowerBound(next);
+        }
+        return jumps;
+    }
+}
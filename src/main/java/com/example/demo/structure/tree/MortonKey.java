@@ -0,0 +1,152 @@
+package com.example.demo.structure.tree;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @ClassName MortonKey
+ * @Description: 二维 Z-order（Morton）组合关键字：
+ * 1.两个有符号 int 坐标翻转符号位后按无符号数交错编码为 64 位 z 值，x 占偶数位、y 占奇数位；
+ * 2.关键字按 z 值的无符号大小排序，空间上相邻的点在B+树中也大多相邻；
+ * 3.矩形查询把区间 [z(minX, minY), z(maxX, maxY)] 中落在矩形外的部分用 BIGMIN 跳过，见 {@link MortonBPlusTree}。
+ * 经纬度等浮点坐标由调用方量化为 int，例如 (tenant, 以秒计的时间戳)
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public final class MortonKey implements Comparable<MortonKey> {
+
+    // 偶数位（x）掩码
+    private static final long X_MASK = 0x5555555555555555L;
+
+    // 奇数位（y）掩码
+    private static final long Y_MASK = 0xAAAAAAAAAAAAAAAAL;
+
+    public static final Codec<MortonKey> CODEC = new Codec<MortonKey>() {
+        @Override
+        public int size() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(ByteBuffer buffer, MortonKey value) {
+            buffer.putLong(value.z);
+        }
+
+        @Override
+        public MortonKey decode(ByteBuffer buffer) {
+            return new MortonKey(buffer.getLong());
+        }
+    };
+
+    private final long z;
+
+    private MortonKey(long z) {
+        this.z = z;
+    }
+
+    public static MortonKey of(int x, int y) {
+        return new MortonKey(spread(x ^ Integer.MIN_VALUE) | spread(y ^ Integer.MIN_VALUE) << 1);
+    }
+
+    /**
+     * 由 z 值构造关键字，用于按 z 值定位
+     */
+    public static MortonKey ofZ(long z) {
+        return new MortonKey(z);
+    }
+
+    public int getX() {
+        return compact(z) ^ Integer.MIN_VALUE;
+    }
+
+    public int getY() {
+        return compact(z >>> 1) ^ Integer.MIN_VALUE;
+    }
+
+    public long getZ() {
+        return z;
+    }
+
+    @Override
+    public int compareTo(MortonKey o) {
+        return Long.compareUnsigned(z, o.z);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof MortonKey && ((MortonKey) o).z == z;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(z);
+    }
+
+    @Override
+    public String toString() {
+        return "(" + getX() + ", " + getY() + ")";
+    }
+
+    /**
+     * 已知 z 落在 [zMin, zMax] 内但不在矩形内，求 z 之后第一个落在矩形内的 z 值（Tropf-Herzog 的 BIGMIN）。
+     * zMin、zMax 分别是矩形左下角和右上角的 z 值，比较均按无符号数
+     */
+    static long bigMin(long z, long zMin, long zMax) {
+        long bigMin = 0;
+        for (int bit = 63; bit >= 0; bit--) {
+            long mask = 1L << bit;
+            int state = ((z & mask) != 0 ? 4 : 0) | ((zMin & mask) != 0 ? 2 : 0) | ((zMax & mask) != 0 ? 1 : 0);
+            switch (state) {
+                case 1:
+                    //z 在这一位低于上界：候选值为上界在这一维取1的最小点，然后在下半部分继续
+                    bigMin = load1000(zMin, bit);
+                    zMax = load0111(zMax, bit);
+                    break;
+                case 3:
+                    return zMin;
+                case 4:
+                    return bigMin;
+                case 5:
+                    zMin = load1000(zMin, bit);
+                    break;
+                default:
+                    //0、7：三者在这一位相同；2、6 不会出现（zMin <= zMax）
+                    break;
+            }
+        }
+        return bigMin;
+    }
+
+    // 把 value 中 bit 所在维度的这一位置1，该维度更低的位清0
+    private static long load1000(long value, int bit) {
+        long mask = 1L << bit;
+        long lower = ((bit & 1) == 0 ? X_MASK : Y_MASK) & (mask - 1);
+        return (value | mask) & ~lower;
+    }
+
+    // 把 value 中 bit 所在维度的这一位清0，该维度更低的位置1
+    private static long load0111(long value, int bit) {
+        long mask = 1L << bit;
+        long lower = ((bit & 1) == 0 ? X_MASK : Y_MASK) & (mask - 1);
+        return (value & ~mask) | lower;
+    }
+
+    // 把32位整数的各位分散到64位的偶数位上
+    private static long spread(int value) {
+        long x = value & 0xFFFFFFFFL;
+        x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+        x = (x | x << 8) & 0x00FF00FF00FF00FFL;
+        x = (x | x << 4) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x << 2) & 0x3333333333333333L;
+        return (x | x << 1) & X_MASK;
+    }
+
+    // spread 的逆运算，取出偶数位
+    private static int compact(long z) {
+        long x = z & X_MASK;
+        x = (x | x >>> 1) & 0x3333333333333333L;
+        x = (x | x >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x >>> 4) & 0x00FF00FF00FF00FFL;
+        x = (x | x >>> 8) & 0x0000FFFF0000FFFFL;
+        return (int) (x | x >>> 16);
+    }
+}
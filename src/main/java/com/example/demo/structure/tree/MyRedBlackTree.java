@@ -2,7 +2,14 @@ package com.example.demo.structure.tree;
 
 import lombok.Data;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * @ClassName MyRedBlackTree
@@ -32,13 +39,27 @@ public class MyRedBlackTree<K,V> {
      */
     private transient int size = 0;
 
+    /**
+     * The number of structural modifications to the tree.
+     */
+    private transient int modCount = 0;
+
+    public MyRedBlackTree() {
+        comparator = null;
+    }
+
+    public MyRedBlackTree(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
     public MyRedBlackTree(K key, V value) {
         this.root = new TreeNode(key, value,null);
+        this.size = 1;
         comparator = null;
     }
 
     @Data
-    private static class TreeNode<K,V> {
+    private static class TreeNode<K,V> implements Map.Entry<K,V> {
 
         private static final boolean RED   = false;
         private static final boolean BLACK = true;
@@ -210,6 +231,7 @@ public class MyRedBlackTree<K,V> {
 
             root = new TreeNode<>(key, value, null);
             size = 1;
+            modCount++;
             return null;
         }
         int cmp;
@@ -251,9 +273,100 @@ public class MyRedBlackTree<K,V> {
             parent.right = e;
         fixAfterInsertion(e);
         size++;
+        modCount++;
         return null;
     }
 
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 迭代查找，不分配对象
+     *
+     * @return key对应的值，不存在时返回null
+     */
+    public V get(Object key) {
+        TreeNode<K,V> p = getEntry(key);
+        return (p == null ? null : p.value);
+    }
+
+    public boolean containsKey(Object key) {
+        return getEntry(key) != null;
+    }
+
+    /**
+     * @throws NoSuchElementException 树为空
+     */
+    public K firstKey() {
+        return key(getFirstEntry());
+    }
+
+    /**
+     * @throws NoSuchElementException 树为空
+     */
+    public K lastKey() {
+        return key(getLastEntry());
+    }
+
+    /**
+     * @return 小于等于key的最大关键字，不存在时返回null
+     */
+    public K floorKey(K key) {
+        return keyOrNull(getFloorEntry(key));
+    }
+
+    /**
+     * @return 大于等于key的最小关键字，不存在时返回null
+     */
+    public K ceilingKey(K key) {
+        return keyOrNull(getCeilingEntry(key));
+    }
+
+    /**
+     * @return 小于key的最大关键字，不存在时返回null
+     */
+    public K lowerKey(K key) {
+        return keyOrNull(getLowerEntry(key));
+    }
+
+    /**
+     * @return 大于key的最小关键字，不存在时返回null
+     */
+    public K higherKey(K key) {
+        return keyOrNull(getHigherEntry(key));
+    }
+
+    /**
+     * 按关键字升序扫描区间 [from, to)，null表示该方向不设边界
+     */
+    public Cursor cursor(K from, K to) {
+        return new Cursor(false).seek(from, to);
+    }
+
+    /**
+     * 按关键字降序扫描区间 [from, to)，null表示该方向不设边界
+     */
+    public Cursor descendingCursor(K from, K to) {
+        return new Cursor(true).seek(from, to);
+    }
+
+    /**
+     * 区间 [from, to) 的只读视图，null表示该方向不设边界。
+     * 不复制数据：get / containsKey 在整棵树上查找后检查范围，遍历时从起点沿后继节点移动，
+     * 迭代器直接返回树中的节点作为 Map.Entry，对它调用 setValue 会写回树中
+     */
+    public Map<K,V> subMap(K from, K to) {
+        if (from != null && to != null && compare(from, to) > 0) {
+            throw new IllegalArgumentException("from > to");
+        }
+        return new SubMap(from, to);
+    }
+
     public V remove(Object key) {
         TreeNode<K,V> p = getEntry(key);
         if (p == null)
@@ -371,6 +484,7 @@ public class MyRedBlackTree<K,V> {
      * Delete node p, and then rebalance the tree.
      */
     private void deleteEntry(TreeNode<K,V> p) {
+        modCount++;
         size--;
 
         // If strictly internal, copy successor's element to p and then make p
@@ -496,6 +610,159 @@ public class MyRedBlackTree<K,V> {
         }
     }
 
+    /**
+     * Returns the first Entry in the tree (according to the tree's
+     * key-sort function).  Returns null if the tree is empty.
+     */
+    final TreeNode<K,V> getFirstEntry() {
+        TreeNode<K,V> p = root;
+        if (p != null)
+            while (p.left != null)
+                p = p.left;
+        return p;
+    }
+
+    /**
+     * Returns the last Entry in the tree (according to the tree's
+     * key-sort function).  Returns null if the tree is empty.
+     */
+    final TreeNode<K,V> getLastEntry() {
+        TreeNode<K,V> p = root;
+        if (p != null)
+            while (p.right != null)
+                p = p.right;
+        return p;
+    }
+
+    /**
+     * Gets the entry corresponding to the specified key; if no such entry
+     * exists, returns the entry for the least key greater than the specified
+     * key; if no such entry exists (i.e., the greatest key in the Tree is less
+     * than the specified key), returns {@code null}.
+     */
+    final TreeNode<K,V> getCeilingEntry(K key) {
+        TreeNode<K,V> p = root;
+        while (p != null) {
+            int cmp = compare(key, p.key);
+            if (cmp < 0) {
+                if (p.left != null)
+                    p = p.left;
+                else
+                    return p;
+            } else if (cmp > 0) {
+                if (p.right != null) {
+                    p = p.right;
+                } else {
+                    TreeNode<K,V> parent = p.parent;
+                    TreeNode<K,V> ch = p;
+                    while (parent != null && ch == parent.right) {
+                        ch = parent;
+                        parent = parent.parent;
+                    }
+                    return parent;
+                }
+            } else
+                return p;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the entry corresponding to the specified key; if no such entry
+     * exists, returns the entry for the greatest key less than the specified
+     * key; if no such entry exists, returns {@code null}.
+     */
+    final TreeNode<K,V> getFloorEntry(K key) {
+        TreeNode<K,V> p = root;
+        while (p != null) {
+            int cmp = compare(key, p.key);
+            if (cmp > 0) {
+                if (p.right != null)
+                    p = p.right;
+                else
+                    return p;
+            } else if (cmp < 0) {
+                if (p.left != null) {
+                    p = p.left;
+                } else {
+                    TreeNode<K,V> parent = p.parent;
+                    TreeNode<K,V> ch = p;
+                    while (parent != null && ch == parent.left) {
+                        ch = parent;
+                        parent = parent.parent;
+                    }
+                    return parent;
+                }
+            } else
+                return p;
+
+        }
+        return null;
+    }
+
+    /**
+     * Gets the entry for the least key greater than the specified
+     * key; if no such entry exists, returns the entry for the least
+     * key greater than the specified key; if no such entry exists
+     * returns {@code null}.
+     */
+    final TreeNode<K,V> getHigherEntry(K key) {
+        TreeNode<K,V> p = root;
+        while (p != null) {
+            int cmp = compare(key, p.key);
+            if (cmp < 0) {
+                if (p.left != null)
+                    p = p.left;
+                else
+                    return p;
+            } else {
+                if (p.right != null) {
+                    p = p.right;
+                } else {
+                    TreeNode<K,V> parent = p.parent;
+                    TreeNode<K,V> ch = p;
+                    while (parent != null && ch == parent.right) {
+                        ch = parent;
+                        parent = parent.parent;
+                    }
+                    return parent;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the entry for the greatest key less than the specified key; if
+     * no such entry exists (i.e., the least key in the Tree is greater than
+     * the specified key), returns {@code null}.
+     */
+    final TreeNode<K,V> getLowerEntry(K key) {
+        TreeNode<K,V> p = root;
+        while (p != null) {
+            int cmp = compare(key, p.key);
+            if (cmp > 0) {
+                if (p.right != null)
+                    p = p.right;
+                else
+                    return p;
+            } else {
+                if (p.left != null) {
+                    p = p.left;
+                } else {
+                    TreeNode<K,V> parent = p.parent;
+                    TreeNode<K,V> ch = p;
+                    while (parent != null && ch == parent.left) {
+                        ch = parent;
+                        parent = parent.parent;
+                    }
+                    return parent;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Returns the successor of the specified Entry, or null if no such.
      */
@@ -519,6 +786,209 @@ public class MyRedBlackTree<K,V> {
     }
 
 
+    /**
+     * Returns the predecessor of the specified Entry, or null if no such.
+     */
+    static <K,V> TreeNode<K,V> predecessor(TreeNode<K,V> t) {
+        if (t == null)
+            return null;
+        else if (t.left != null) {
+            TreeNode<K,V> p = t.left;
+            while (p.right != null)
+                p = p.right;
+            return p;
+        } else {
+            TreeNode<K,V> p = t.parent;
+            TreeNode<K,V> ch = t;
+            while (p != null && ch == p.left) {
+                ch = p;
+                p = p.parent;
+            }
+            return p;
+        }
+    }
+
+    static <K> K keyOrNull(TreeNode<K,?> e) {
+        return (e == null) ? null : e.key;
+    }
+
+    static <K> K key(TreeNode<K,?> e) {
+        if (e==null)
+            throw new NoSuchElementException();
+        return e.key;
+    }
+
+    /**
+     * 范围扫描游标，与 {@link BPlusTreeCursor} 的用法相同：
+     * <pre>
+     *     MyRedBlackTree<K, V>.Cursor cursor = tree.cursor(from, to);
+     *     while (cursor.next()) {
+     *         cursor.getKey();
+     *         cursor.getValue();
+     *     }
+     * </pre>
+     * 定位起点时从根节点下降一次，之后沿 parent 指针走到后继（降序时为前驱）节点，不使用栈，每一步不分配对象。
+     * 扫描期间修改树的结构会在下一次 next() 时抛出 ConcurrentModificationException
+     */
+    public final class Cursor {
+
+        // 是否降序扫描
+        private final boolean descending;
+
+        // 区间下界（包含），null表示无下界
+        private K from;
+
+        // 区间上界（不包含），null表示无上界
+        private K to;
+
+        // 下一个要读取的节点，为null表示扫描结束
+        private TreeNode<K,V> next;
+
+        // 当前行
+        private TreeNode<K,V> current;
+
+        private int expectedModCount;
+
+        Cursor(boolean descending) {
+            this.descending = descending;
+        }
+
+        /**
+         * 将游标重新定位到区间 [from, to) 的起点，可以复用游标进行多次扫描
+         *
+         * @return 当前游标
+         */
+        public Cursor seek(K from, K to) {
+            this.from = from;
+            this.to = to;
+            this.current = null;
+            this.expectedModCount = modCount;
+            if (descending) {
+                next = to == null ? getLastEntry() : getLowerEntry(to);
+            } else {
+                next = from == null ? getFirstEntry() : getCeilingEntry(from);
+            }
+            return this;
+        }
+
+        /**
+         * 前进到下一行
+         *
+         * @return 存在下一行时返回true，扫描结束返回false
+         */
+        public boolean next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            TreeNode<K,V> e = next;
+            if (e == null
+                    || (descending ? from != null && compare(e.key, from) < 0
+                                   : to != null && compare(e.key, to) >= 0)) {
+                next = null;
+                current = null;
+                return false;
+            }
+            next = descending ? predecessor(e) : successor(e);
+            current = e;
+            return true;
+        }
+
+        /**
+         * @return 当前行的关键字
+         * @throws NoSuchElementException 尚未调用next()或扫描已结束
+         */
+        public K getKey() {
+            return currentEntry().key;
+        }
+
+        /**
+         * @return 当前行的值
+         * @throws NoSuchElementException 尚未调用next()或扫描已结束
+         */
+        public V getValue() {
+            return currentEntry().value;
+        }
+
+        private TreeNode<K,V> currentEntry() {
+            if (current == null)
+                throw new NoSuchElementException();
+            return current;
+        }
+    }
+
+    /**
+     * {@link #subMap} 返回的只读视图
+     */
+    private final class SubMap extends AbstractMap<K,V> {
+
+        // 区间下界（包含），null表示无下界
+        private final K from;
+
+        // 区间上界（不包含），null表示无上界
+        private final K to;
+
+        SubMap(K from, K to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        private boolean inRange(Object key) {
+            return (from == null || compare(key, from) >= 0) && (to == null || compare(key, to) < 0);
+        }
+
+        @Override
+        public V get(Object key) {
+            return inRange(key) ? MyRedBlackTree.this.get(key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return inRange(key) && MyRedBlackTree.this.containsKey(key);
+        }
+
+        @Override
+        public Set<Map.Entry<K,V>> entrySet() {
+            return new AbstractSet<Map.Entry<K,V>>() {
+                @Override
+                public Iterator<Map.Entry<K,V>> iterator() {
+                    final Cursor cursor = cursor(from, to);
+                    return new Iterator<Map.Entry<K,V>>() {
+
+                        // 是否已经读取了下一行
+                        private boolean ready;
+
+                        private boolean hasNext;
+
+                        @Override
+                        public boolean hasNext() {
+                            if (!ready) {
+                                hasNext = cursor.next();
+                                ready = true;
+                            }
+                            return hasNext;
+                        }
+
+                        @Override
+                        public Map.Entry<K,V> next() {
+                            if (!hasNext())
+                                throw new NoSuchElementException();
+                            ready = false;
+                            return cursor.currentEntry();
+                        }
+                    };
+                }
+
+                // 沿后继节点计数，O(区间大小)
+                @Override
+                public int size() {
+                    int n = 0;
+                    for (Cursor cursor = cursor(from, to); cursor.next(); )
+                        n++;
+                    return n;
+                }
+            };
+        }
+    }
+
     @SuppressWarnings("unchecked")
     final int compare(Object k1, Object k2) {
         return comparator==null ? ((Comparable<? super K>)k1).compareTo((K)k2)
@@ -0,0 +1,625 @@
+package com.example.demo.structure.tree;
+
+import java.io.Closeable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * @ClassName PartitionedBPlusTree
+ * @Description: 按关键字范围分区、各分区互不共享的B+树
+ * 1.分区边界 b[0] < b[1] < ... 把关键字划分为 N 个区间，第 i 个分区负责 [b[i-1], b[i])；
+ * 2.每个分区是一棵独立的 {@link BPlusTree}，只由该分区的工作线程访问，树本身不需要任何同步，
+ *   不同分区的写入之间没有共享的缓存行（包括根节点）；
+ * 3.调用方按关键字把请求放入对应分区的队列，工作线程每次取出队列中的一批请求连续执行，
+ *   putAll / getAll 先按分区分组，每个分区只入队一次；
+ * 4.rebalance 按各分区的关键字个数重新划分边界：锁住相邻的两个分区，等它们队列中已有的请求执行完，
+ *   把多出来的关键字搬到另一侧并移动边界。入队时持有分区的读锁并检查关键字仍在该分区的范围内，
+ *   不在时按新的边界重新路由，搬迁期间不会有请求落到错误的分区；
+ * 5.设置 setAutoRebalance 后，工作线程发现本分区的关键字个数超过平均值的 maxSkew 倍时在后台触发 rebalance。
+ * 返回的 CompletableFuture 由工作线程完成，依赖它的回调不应执行耗时操作。
+ * Java 不能把线程绑定到指定的 CPU 核心，工作线程数即分区数，通常取核心数
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@SuppressWarnings("unchecked")
+public class PartitionedBPlusTree<K extends Comparable<K>, V> implements Closeable {
+
+    // 工作线程每次最多取出的请求数
+    static final int BATCH = 256;
+
+    // 分区关键字个数少于该值时不触发自动 rebalance
+    private static final int MIN_REBALANCE_SIZE = 1024;
+
+    private final Partition<K, V>[] partitions;
+
+    // 分区边界，只在持有相邻两个分区写锁时整体替换
+    private volatile K[] boundaries;
+
+    // 自动 rebalance 的阈值，0表示关闭
+    private volatile double autoRebalance;
+
+    private final AtomicBoolean rebalancing = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    /**
+     * @param boundaries 严格递增的分区边界，分区数为 boundaries.size() + 1
+     */
+    public PartitionedBPlusTree(int order, List<K> boundaries) {
+        if (order < 3) {
+            throw new IllegalArgumentException("order must be greater than 2");
+        }
+        for (int i = 1; i < boundaries.size(); i++) {
+            if (boundaries.get(i - 1).compareTo(boundaries.get(i)) >= 0) {
+                throw new IllegalArgumentException("boundaries must be strictly increasing");
+            }
+        }
+        this.boundaries = boundaries.toArray((K[]) new Comparable[boundaries.size()]);
+        this.partitions = new Partition[boundaries.size() + 1];
+        for (int i = 0; i < partitions.length; i++) {
+            K low = i == 0 ? null : boundaries.get(i - 1);
+            K high = i == boundaries.size() ? null : boundaries.get(i);
+            partitions[i] = new Partition<K, V>(this, i, new BPlusTree<K, V>(order), low, high);
+        }
+        for (Partition<K, V> partition : partitions) {
+            partition.worker.start();
+        }
+    }
+
+    /**
+     * 一个分区：一棵B+树、一个请求队列和唯一访问这棵树的工作线程
+     */
+    private static final class Partition<K extends Comparable<K>, V> implements Runnable {
+
+        private final PartitionedBPlusTree<K, V> owner;
+
+        private final BPlusTree<K, V> tree;
+
+        private final BlockingQueue<Task<K, V, ?>> queue = new LinkedBlockingQueue<Task<K, V, ?>>();
+
+        // 入队持有读锁，搬迁关键字持有写锁
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final Thread worker;
+
+        // 分区范围 [low, high)，null表示该方向不设边界；只在持有写锁时修改
+        private volatile K low;
+
+        private volatile K high;
+
+        // 关键字个数，工作线程每执行完一批请求后更新
+        private volatile int size;
+
+        Partition(PartitionedBPlusTree<K, V> owner, int index, BPlusTree<K, V> tree, K low, K high) {
+            this.owner = owner;
+            this.tree = tree;
+            this.low = low;
+            this.high = high;
+            this.worker = new Thread(this, "bplustree-partition-" + index);
+            this.worker.setDaemon(true);
+        }
+
+        boolean owns(K key) {
+            K l = low;
+            K h = high;
+            return (l == null || key.compareTo(l) >= 0) && (h == null || key.compareTo(h) < 0);
+        }
+
+        <R> CompletableFuture<R> enqueue(Function<BPlusTree<K, V>, R> action) {
+            Task<K, V, R> task = new Task<K, V, R>(action);
+            queue.add(task);
+            return task.future;
+        }
+
+        @Override
+        public void run() {
+            List<Task<K, V, ?>> batch = new ArrayList<Task<K, V, ?>>(BATCH);
+            for (;;) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, BATCH - 1);
+                for (Task<K, V, ?> task : batch) {
+                    if (task.action == null) {
+                        return;
+                    }
+                    task.run(tree);
+                }
+                batch.clear();
+                size = tree.size();
+                owner.checkSkew(size);
+            }
+        }
+    }
+
+    private static final class Task<K extends Comparable<K>, V, R> {
+
+        // null表示停止工作线程
+        private final Function<BPlusTree<K, V>, R> action;
+
+        private final CompletableFuture<R> future = new CompletableFuture<R>();
+
+        Task(Function<BPlusTree<K, V>, R> action) {
+            this.action = action;
+        }
+
+        void run(BPlusTree<K, V> tree) {
+            try {
+                future.complete(action.apply(tree));
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * @return 当前的分区边界
+     */
+    public List<K> getBoundaries() {
+        List<K> result = new ArrayList<K>(boundaries.length);
+        for (K boundary : boundaries) {
+            result.add(boundary);
+        }
+        return result;
+    }
+
+    /**
+     * @return 各分区的关键字个数，取自每个分区最近执行完的一批请求
+     */
+    public int[] getPartitionSizes() {
+        int[] sizes = new int[partitions.length];
+        for (int i = 0; i < partitions.length; i++) {
+            sizes[i] = partitions[i].size;
+        }
+        return sizes;
+    }
+
+    /**
+     * 等待之前提交的请求全部执行完，返回关键字总数
+     */
+    public long size() {
+        List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+        //同时锁住所有分区，搬迁中的关键字不会被重复计算或漏算
+        for (Partition<K, V> partition : partitions) {
+            partition.lock.readLock().lock();
+        }
+        try {
+            for (Partition<K, V> partition : partitions) {
+                futures.add(enqueue(partition, BPlusTree::size));
+            }
+        } finally {
+            for (Partition<K, V> partition : partitions) {
+                partition.lock.readLock().unlock();
+            }
+        }
+        long size = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            size += join(future);
+        }
+        return size;
+    }
+
+    public CompletableFuture<V> getAsync(K key) {
+        return submit(key, tree -> tree.get(key));
+    }
+
+    public CompletableFuture<Void> insertOrUpdateAsync(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        return submit(key, tree -> {
+            tree.insertOrUpdate(key, value);
+            return null;
+        });
+    }
+
+    public CompletableFuture<V> removeAsync(K key) {
+        return submit(key, tree -> tree.remove(key));
+    }
+
+    public V get(K key) {
+        return join(getAsync(key));
+    }
+
+    public void insertOrUpdate(K key, V value) {
+        join(insertOrUpdateAsync(key, value));
+    }
+
+    public V remove(K key) {
+        return join(removeAsync(key));
+    }
+
+    /**
+     * 批量写入：按分区分组，每个分区只入队一次，由工作线程调用 {@link BPlusTree#putAll}
+     */
+    public void putAll(Map<? extends K, ? extends V> batch) {
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+        Map<K, V> remaining = new HashMap<K, V>(batch);
+        while (!remaining.isEmpty()) {
+            Map<K, V>[] groups = new Map[partitions.length];
+            for (Map.Entry<K, V> entry : remaining.entrySet()) {
+                int index = route(entry.getKey());
+                if (groups[index] == null) {
+                    groups[index] = new HashMap<K, V>();
+                }
+                groups[index].put(entry.getKey(), entry.getValue());
+            }
+            remaining = new HashMap<K, V>();
+            for (int i = 0; i < groups.length; i++) {
+                if (groups[i] == null) {
+                    continue;
+                }
+                Partition<K, V> partition = partitions[i];
+                Map<K, V> owned = new HashMap<K, V>();
+                partition.lock.readLock().lock();
+                try {
+                    //分组后边界可能已经移动，不再属于该分区的关键字下一轮重新分组
+                    for (Map.Entry<K, V> entry : groups[i].entrySet()) {
+                        (partition.owns(entry.getKey()) ? owned : remaining).put(entry.getKey(), entry.getValue());
+                    }
+                    if (!owned.isEmpty()) {
+                        futures.add(enqueue(partition, tree -> {
+                            tree.putAll(owned);
+                            return null;
+                        }));
+                    }
+                } finally {
+                    partition.lock.readLock().unlock();
+                }
+            }
+        }
+        for (CompletableFuture<Void> future : futures) {
+            join(future);
+        }
+    }
+
+    /**
+     * 批量查找：按分区分组，每个分区只入队一次
+     *
+     * @return 按关键字升序排列的已找到的关键字和值
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        List<CompletableFuture<Map<K, V>>> futures = new ArrayList<CompletableFuture<Map<K, V>>>();
+        List<K> remaining = new ArrayList<K>(keys);
+        while (!remaining.isEmpty()) {
+            List<K>[] groups = new List[partitions.length];
+            for (K key : remaining) {
+                int index = route(key);
+                if (groups[index] == null) {
+                    groups[index] = new ArrayList<K>();
+                }
+                groups[index].add(key);
+            }
+            remaining = new ArrayList<K>();
+            for (int i = 0; i < groups.length; i++) {
+                if (groups[i] == null) {
+                    continue;
+                }
+                Partition<K, V> partition = partitions[i];
+                List<K> owned = new ArrayList<K>();
+                partition.lock.readLock().lock();
+                try {
+                    for (K key : groups[i]) {
+                        (partition.owns(key) ? owned : remaining).add(key);
+                    }
+                    if (!owned.isEmpty()) {
+                        futures.add(enqueue(partition, tree -> tree.getAll(owned)));
+                    }
+                } finally {
+                    partition.lock.readLock().unlock();
+                }
+            }
+        }
+        Map<K, V> result = new TreeMap<K, V>();
+        for (CompletableFuture<Map<K, V>> future : futures) {
+            result.putAll(join(future));
+        }
+        return result;
+    }
+
+    /**
+     * 区间 [from, to) 内的关键字和值，null表示该方向不设边界。
+     * 每个分区各自读取一致的结果，不同分区之间不是同一时刻的快照
+     *
+     * @return 按关键字升序排列
+     * @throws IllegalArgumentException from > to
+     */
+    public List<Map.Entry<K, V>> range(K from, K to) {
+        if (from != null && to != null) {
+            int cmp = from.compareTo(to);
+            if (cmp > 0) {
+                throw new IllegalArgumentException("from > to");
+            }
+            if (cmp == 0) {
+                return new ArrayList<Map.Entry<K, V>>();
+            }
+        }
+        List<CompletableFuture<List<Map.Entry<K, V>>>> futures = new ArrayList<CompletableFuture<List<Map.Entry<K, V>>>>();
+        boolean routed = false;
+        while (!routed) {
+            int first = from == null ? 0 : route(from);
+            int last = to == null ? partitions.length - 1 : route(to);
+            //按下标顺序锁住涉及的分区，持有锁期间这些分区两侧的边界都不会移动
+            for (int i = first; i <= last; i++) {
+                partitions[i].lock.readLock().lock();
+            }
+            try {
+                if (first != (from == null ? 0 : route(from)) || last != (to == null ? partitions.length - 1 : route(to))) {
+                    //加锁前边界已经移动，重新路由
+                    continue;
+                }
+                routed = true;
+                for (int i = first; i <= last; i++) {
+                    futures.add(enqueue(partitions[i], tree -> {
+                        List<Map.Entry<K, V>> entries = new ArrayList<Map.Entry<K, V>>();
+                        BPlusTreeCursor<K, V> cursor = tree.scan(from, to);
+                        while (cursor.next()) {
+                            entries.add(new AbstractMap.SimpleImmutableEntry<K, V>(cursor.getKey(), cursor.getValue()));
+                        }
+                        return entries;
+                    }));
+                }
+            } finally {
+                for (int i = first; i <= last; i++) {
+                    partitions[i].lock.readLock().unlock();
+                }
+            }
+        }
+        List<Map.Entry<K, V>> result = new ArrayList<Map.Entry<K, V>>();
+        for (CompletableFuture<List<Map.Entry<K, V>>> future : futures) {
+            result.addAll(join(future));
+        }
+        return result;
+    }
+
+    /**
+     * 开启自动 rebalance
+     *
+     * @param maxSkew 分区关键字个数超过平均值的 maxSkew 倍（大于1）时触发，0表示关闭
+     */
+    public void setAutoRebalance(double maxSkew) {
+        if (maxSkew != 0 && maxSkew <= 1) {
+            throw new IllegalArgumentException("Illegal max skew: " + maxSkew);
+        }
+        this.autoRebalance = maxSkew;
+    }
+
+    public double getAutoRebalance() {
+        return autoRebalance;
+    }
+
+    // 工作线程执行完一批请求后调用
+    private void checkSkew(int size) {
+        double maxSkew = autoRebalance;
+        if (maxSkew == 0 || size < MIN_REBALANCE_SIZE || rebalancing.get() || closed) {
+            return;
+        }
+        long total = 0;
+        for (Partition<K, V> partition : partitions) {
+            total += partition.size;
+        }
+        if (size > maxSkew * total / partitions.length && rebalancing.compareAndSet(false, true)) {
+            //工作线程不能等待自己队列中的请求，交给其他线程执行
+            CompletableFuture.runAsync(() -> {
+                try {
+                    if (!closed) {
+                        rebalance();
+                    }
+                } finally {
+                    rebalancing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 按关键字个数重新划分分区边界，使每个分区的关键字个数接近平均值：
+     * 先从左到右处理需要把关键字向右搬的边界，再从右到左处理需要向左搬的边界，
+     * 这样每次搬出关键字的分区都有足够的关键字。期间其他分区的请求不受影响。
+     * 不能在工作线程或 CompletableFuture 的回调中调用
+     *
+     * @return 搬迁的关键字个数
+     */
+    public long rebalance() {
+        int n = partitions.length;
+        long[] sizes = new long[n];
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            sizes[i] = join(call(partitions[i], BPlusTree::size));
+            total += sizes[i];
+        }
+        //边界i左侧应有的关键字个数
+        long[] target = new long[n - 1];
+        for (int i = 0; i < n - 1; i++) {
+            target[i] = total * (i + 1) / n;
+        }
+        long moved = 0;
+        long prefix = 0;
+        for (int i = 0; i < n - 1; i++) {
+            prefix += sizes[i];
+            if (prefix > target[i]) {
+                long count = moveRight(i, (int) (prefix - target[i]));
+                sizes[i] -= count;
+                sizes[i + 1] += count;
+                prefix -= count;
+                moved += count;
+            }
+        }
+        long suffix = 0;
+        for (int i = n - 1; i > 0; i--) {
+            suffix += sizes[i];
+            if (suffix > total - target[i - 1]) {
+                long count = moveLeft(i - 1, (int) (suffix - (total - target[i - 1])));
+                sizes[i] -= count;
+                sizes[i - 1] += count;
+                suffix -= count;
+                moved += count;
+            }
+        }
+        return moved;
+    }
+
+    // 把分区 left 中最大的 count 个关键字搬到分区 left + 1
+    private int moveRight(int left, int count) {
+        return move(left, count, true);
+    }
+
+    // 把分区 left + 1 中最小的 count 个关键字搬到分区 left
+    private int moveLeft(int left, int count) {
+        return move(left, count, false);
+    }
+
+    private int move(int left, int count, boolean toRight) {
+        Partition<K, V> from = partitions[toRight ? left : left + 1];
+        Partition<K, V> to = partitions[toRight ? left + 1 : left];
+        Partition<K, V> first = partitions[left];
+        Partition<K, V> second = partitions[left + 1];
+        first.lock.writeLock().lock();
+        second.lock.writeLock().lock();
+        try {
+            //队列是先进先出的，搬迁在已入队的请求之后执行
+            Map.Entry<K, Map<K, V>> taken = join(enqueue(from, tree -> {
+                //向左搬时至少留下一个关键字作为新的边界
+                int size = tree.size();
+                int n = toRight ? Math.min(count, size) : Math.min(count, size - 1);
+                if (n <= 0) {
+                    return null;
+                }
+                K boundary = tree.select(toRight ? size - n : n).getKey();
+                Map<K, V> entries = new HashMap<K, V>();
+                BPlusTreeCursor<K, V> cursor = toRight ? tree.scan(boundary, null) : tree.scan(null, boundary);
+                while (cursor.next()) {
+                    entries.put(cursor.getKey(), cursor.getValue());
+                }
+                for (K key : entries.keySet()) {
+                    tree.remove(key);
+                }
+                return new AbstractMap.SimpleImmutableEntry<K, Map<K, V>>(boundary, entries);
+            }));
+            if (taken == null) {
+                return 0;
+            }
+            join(enqueue(to, tree -> {
+                tree.putAll(taken.getValue());
+                return null;
+            }));
+            K boundary = taken.getKey();
+            first.high = boundary;
+            second.low = boundary;
+            K[] updated = boundaries.clone();
+            updated[left] = boundary;
+            boundaries = updated;
+            return taken.getValue().size();
+        } finally {
+            second.lock.writeLock().unlock();
+            first.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 停止所有工作线程，等待已入队的请求执行完
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Partition<K, V> partition : partitions) {
+            partition.lock.writeLock().lock();
+            try {
+                partition.queue.add(new Task<K, V, Void>(null));
+            } finally {
+                partition.lock.writeLock().unlock();
+            }
+        }
+        for (Partition<K, V> partition : partitions) {
+            try {
+                partition.worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // 关键字所在分区的下标：不大于key的边界个数
+    private int route(K key) {
+        if (key == null) {
+            throw new NullPointerException();
+        }
+        K[] bounds = boundaries;
+        int low = 0, high = bounds.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (bounds[mid].compareTo(key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private <R> CompletableFuture<R> submit(K key, Function<BPlusTree<K, V>, R> action) {
+        for (;;) {
+            Partition<K, V> partition = partitions[route(key)];
+            partition.lock.readLock().lock();
+            try {
+                if (partition.owns(key)) {
+                    return enqueue(partition, action);
+                }
+            } finally {
+                partition.lock.readLock().unlock();
+            }
+        }
+    }
+
+    // 不按关键字路由，直接在分区上执行
+    private <R> CompletableFuture<R> call(Partition<K, V> partition, Function<BPlusTree<K, V>, R> action) {
+        partition.lock.readLock().lock();
+        try {
+            return enqueue(partition, action);
+        } finally {
+            partition.lock.readLock().unlock();
+        }
+    }
+
+    // 调用方需持有分区的读锁或写锁，close 之后入队的请求不会被执行
+    private <R> CompletableFuture<R> enqueue(Partition<K, V> partition, Function<BPlusTree<K, V>, R> action) {
+        if (closed) {
+            throw new IllegalStateException("partitioned tree is closed");
+        }
+        return partition.enqueue(action);
+    }
+
+    // 等待结果，工作线程中抛出的异常原样抛出
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
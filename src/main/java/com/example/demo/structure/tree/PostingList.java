@@ -0,0 +1,377 @@
+package com.example.demo.structure.tree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * @ClassName PostingList
+ * @Description: 有序、去重的 long 编号列表（倒排表），用作 {@link PostingListIndex} 的值：
+ * 1.编号按升序分块，每块 {@link #BLOCK} 个，块内第一个编号及其后续数据的偏移量记在跳表中；
+ * 2.块内其余编号只保存与前一个编号的差值，按 varint 编码（每字节7位，最高位表示后面还有字节），
+ * 编号密集时每个编号只占 1~2 个字节，而 List&lt;Long&gt; 中每个编号要占一个 Long 对象和一个引用；
+ * 3.按升序追加时原地写入字节数组末尾，均摊 O(1)；乱序插入和删除需要重新编码整个列表，O(n)；
+ * 4.查找和求交集时先在跳表中二分定位块，再在块内顺序解码，不需要解码整个列表。
+ * 非线程安全
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public final class PostingList implements Iterable<Long> {
+
+    // 每块的编号个数
+    static final int BLOCK = 128;
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+
+    private static final long[] EMPTY_IDS = new long[0];
+
+    private static final int[] EMPTY_OFFSETS = new int[0];
+
+    // 差值的 varint 编码，不含每块的第一个编号
+    private byte[] bytes = EMPTY_BYTES;
+
+    // bytes 中已使用的字节数
+    private int length;
+
+    // 编号个数
+    private int size;
+
+    // 最后一个编号
+    private long last;
+
+    // 跳表：每块的第一个编号，以及该块后续差值在 bytes 中的起始位置
+    private long[] blockIds = EMPTY_IDS;
+
+    private int[] blockOffsets = EMPTY_OFFSETS;
+
+    public PostingList() {
+    }
+
+    /**
+     * 由任意顺序、可重复的编号构造
+     */
+    public static PostingList of(long... ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        PostingList list = new PostingList();
+        for (long id : sorted) {
+            if (list.size == 0 || id != list.last) {
+                list.append(id);
+            }
+        }
+        return list;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return 编码后占用的字节数（差值 + 跳表），不含数组中预留的空间
+     */
+    public int byteSize() {
+        return length + blocks() * (Long.BYTES + Integer.BYTES);
+    }
+
+    public long first() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return blockIds[0];
+    }
+
+    public long last() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return last;
+    }
+
+    /**
+     * 加入编号，大于最后一个编号时直接追加
+     *
+     * @return 编号原来不存在时返回true
+     */
+    public boolean add(long id) {
+        if (size == 0 || id > last) {
+            append(id);
+            return true;
+        }
+        if (contains(id)) {
+            return false;
+        }
+        long[] ids = toArray();
+        int index = -Arrays.binarySearch(ids, id) - 1;
+        clear();
+        for (int i = 0; i < index; i++) {
+            append(ids[i]);
+        }
+        append(id);
+        for (int i = index; i < ids.length; i++) {
+            append(ids[i]);
+        }
+        return true;
+    }
+
+    /**
+     * @return 编号原来存在时返回true
+     */
+    public boolean remove(long id) {
+        if (!contains(id)) {
+            return false;
+        }
+        long[] ids = toArray();
+        clear();
+        for (long value : ids) {
+            if (value != id) {
+                append(value);
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(long id) {
+        Cursor cursor = new Cursor();
+        return cursor.advance(id) && cursor.value == id;
+    }
+
+    /**
+     * 释放字节数组中预留的空间
+     */
+    public void trimToSize() {
+        bytes = Arrays.copyOf(bytes, length);
+        blockIds = Arrays.copyOf(blockIds, blocks());
+        blockOffsets = Arrays.copyOf(blockOffsets, blocks());
+    }
+
+    public long[] toArray() {
+        long[] ids = new long[size];
+        Cursor cursor = new Cursor();
+        for (int i = 0; cursor.next(); i++) {
+            ids[i] = cursor.value;
+        }
+        return ids;
+    }
+
+    /**
+     * 升序遍历，nextLong 不装箱
+     */
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        final Cursor cursor = new Cursor();
+        return new PrimitiveIterator.OfLong() {
+
+            // 是否已经读取了下一个编号
+            private boolean ready;
+
+            private boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    hasNext = cursor.next();
+                    ready = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return cursor.value;
+            }
+        };
+    }
+
+    /**
+     * 多个列表的交集。从最短的列表开始轮流把各列表前进到当前候选编号（leapfrog），
+     * 每次前进先在跳表中跳过整块，代价取决于最短的列表而不是所有列表的总长度
+     */
+    public static PostingList intersect(PostingList... lists) {
+        PostingList result = new PostingList();
+        if (lists.length == 0) {
+            return result;
+        }
+        PostingList[] sorted = lists.clone();
+        Arrays.sort(sorted, Comparator.comparingInt(PostingList::size));
+        Cursor[] cursors = new Cursor[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            cursors[i] = sorted[i].new Cursor();
+        }
+        if (!cursors[0].next()) {
+            return result;
+        }
+        long candidate = cursors[0].value;
+        // 已经停在candidate上的连续列表个数
+        int matched = 1;
+        for (int i = 1 % cursors.length; ; i = (i + 1) % cursors.length) {
+            Cursor cursor = cursors[i];
+            if (matched == cursors.length) {
+                //所有列表都停在candidate上
+                result.append(candidate);
+                if (!cursor.next()) {
+                    return result;
+                }
+                candidate = cursor.value;
+                matched = 1;
+                continue;
+            }
+            if (!cursor.advance(candidate)) {
+                return result;
+            }
+            if (cursor.value == candidate) {
+                matched++;
+            } else {
+                candidate = cursor.value;
+                matched = 1;
+            }
+        }
+    }
+
+    public PostingList intersect(PostingList other) {
+        return intersect(this, other);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PostingList)) {
+            return false;
+        }
+        //编码是确定的，编号相同时字节也相同
+        PostingList other = (PostingList) o;
+        return size == other.size && length == other.length
+                && Arrays.equals(Arrays.copyOf(bytes, length), Arrays.copyOf(other.bytes, length))
+                && Arrays.equals(Arrays.copyOf(blockIds, blocks()), Arrays.copyOf(other.blockIds, blocks()));
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < length; i++) {
+            hash = hash * 31 + bytes[i];
+        }
+        for (int i = 0; i < blocks(); i++) {
+            hash = hash * 31 + Long.hashCode(blockIds[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private int blocks() {
+        return (size + BLOCK - 1) / BLOCK;
+    }
+
+    private void clear() {
+        length = 0;
+        size = 0;
+    }
+
+    // 在末尾追加大于last的编号
+    private void append(long id) {
+        if (size % BLOCK == 0) {
+            int block = size / BLOCK;
+            if (block == blockIds.length) {
+                int capacity = Math.max(4, block * 2);
+                blockIds = Arrays.copyOf(blockIds, capacity);
+                blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+            }
+            blockIds[block] = id;
+            blockOffsets[block] = length;
+        } else {
+            //varint 最多占10个字节
+            if (length + 10 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(16, Math.max(length + 10, bytes.length * 2)));
+            }
+            //升序时差值按无符号数解释不会溢出
+            long delta = id - last;
+            while ((delta & ~0x7FL) != 0) {
+                bytes[length++] = (byte) (delta & 0x7F | 0x80);
+                delta >>>= 7;
+            }
+            bytes[length++] = (byte) delta;
+        }
+        last = id;
+        size++;
+    }
+
+    /**
+     * 顺序解码的游标，位置在第一个编号之前开始
+     */
+    private final class Cursor {
+
+        // 当前编号的下标，-1表示尚未开始
+        private int index = -1;
+
+        // 当前编号
+        private long value;
+
+        // 下一个差值在 bytes 中的位置
+        private int position;
+
+        // 移动到下一个编号
+        boolean next() {
+            if (index + 1 >= size) {
+                index = size;
+                return false;
+            }
+            index++;
+            if (index % BLOCK == 0) {
+                value = blockIds[index / BLOCK];
+                position = blockOffsets[index / BLOCK];
+                return true;
+            }
+            long delta = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                delta |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            value += delta;
+            return true;
+        }
+
+        /**
+         * 移动到第一个不小于target的编号，当前编号已经不小于target时不移动
+         *
+         * @return 不存在这样的编号时返回false
+         */
+        boolean advance(long target) {
+            if (index >= size) {
+                return false;
+            }
+            if (index >= 0 && value >= target) {
+                return true;
+            }
+            //target不在当前块内时，在之后的跳表中找最后一个第一个编号不大于target的块
+            int block = index < 0 ? -1 : index / BLOCK;
+            if (block + 1 < blocks() && blockIds[block + 1] <= target) {
+                int found = Arrays.binarySearch(blockIds, block + 1, blocks(), target);
+                int jump = found >= 0 ? found : -found - 2;
+                index = jump * BLOCK - 1;
+            }
+            while (next()) {
+                if (value >= target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
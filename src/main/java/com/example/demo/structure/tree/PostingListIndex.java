@@ -0,0 +1,76 @@
+package com.example.demo.structure.tree;
+
+/**
+ * @ClassName PostingListIndex
+ * @Description: 一个关键字对应多个 long 编号的B+树（二级索引），值为压缩的 {@link PostingList}：
+ * 1.add / remove 通过 {@link #compute} 只下降一次，并在原地修改倒排表，不替换整个值；
+ * 2.关键字的最后一个编号被删除时删除该关键字；
+ * 3.and 对多个关键字的倒排表求交集，直接在压缩数据上进行。
+ * 通过 {@link #get} 取得的倒排表与树共享，修改前应先复制
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public class PostingListIndex<K extends Comparable<K>> extends BPlusTree<K, PostingList> {
+
+    public PostingListIndex(int order) {
+        super(order);
+    }
+
+    /**
+     * @return 编号原来不在key的倒排表中时返回true
+     */
+    public boolean add(K key, long id) {
+        boolean[] added = new boolean[1];
+        compute(key, (k, list) -> {
+            if (list == null) {
+                list = new PostingList();
+            }
+            added[0] = list.add(id);
+            return list;
+        });
+        return added[0];
+    }
+
+    /**
+     * @return 编号原来在key的倒排表中时返回true
+     */
+    public boolean remove(K key, long id) {
+        boolean[] removed = new boolean[1];
+        compute(key, (k, list) -> {
+            if (list == null) {
+                return null;
+            }
+            removed[0] = list.remove(id);
+            return list.isEmpty() ? null : list;
+        });
+        return removed[0];
+    }
+
+    public boolean contains(K key, long id) {
+        PostingList list = get(key);
+        return list != null && list.contains(id);
+    }
+
+    /**
+     * @return key的编号个数
+     */
+    public int count(K key) {
+        PostingList list = get(key);
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * 同时属于所有关键字的编号
+     */
+    @SafeVarargs
+    public final PostingList and(K... keys) {
+        PostingList[] lists = new PostingList[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            lists[i] = get(keys[i]);
+            if (lists[i] == null) {
+                return new PostingList();
+            }
+        }
+        return PostingList.intersect(lists);
+    }
+}
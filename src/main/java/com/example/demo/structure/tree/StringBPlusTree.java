@@ -0,0 +1,483 @@
+package com.example.demo.structure.tree;
+
+import java.util.Arrays;
+
+/**
+ * @ClassName StringBPlusTree
+ * @Description: 关键字为 String 的前缀压缩B+树
+ * 与 {@link LongBPlusTree} 的结构相同，区别在于节点的关键字按前缀压缩保存：
+ * 1.节点中所有关键字的公共前缀只保存一次（prefix），每个关键字只保存去掉前缀后的后缀；
+ * 2.查找时关键字先与节点前缀比较一次，不匹配时可以直接确定位置，匹配时二分查找只比较后缀，
+ *   URL、带租户前缀的 id 这类公共前缀很长的关键字不会在每次比较时重复扫描前缀；
+ * 3.叶子节点分裂时上推最短分隔串（区分左右两个节点所需的最短前缀），而不是右节点的完整首关键字，
+ *   非叶子节点的关键字更短，公共前缀也更长。
+ *
+ * 插入的关键字与节点前缀不匹配时缩短前缀，分裂、合并时按新节点的首尾关键字重新计算前缀。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+@SuppressWarnings("unchecked")
+public class StringBPlusTree<V> {
+
+    // 根节点
+    private Node<V> root;
+
+    // 阶数，M值
+    private final int order;
+
+    // 树高，只有一个叶子节点时为1
+    private int height = 1;
+
+    // 关键字个数
+    private int size;
+
+    // 节点分裂时上推到父节点的关键字
+    private String splitKey;
+
+    // 最近一次插入或删除前与关键字关联的值
+    private Object oldValue;
+
+    public StringBPlusTree(int order) {
+        if (order < 3) {
+            throw new IllegalArgumentException("order must be greater than 2");
+        }
+        this.order = order;
+        root = new Node<V>(true, order);
+    }
+
+    static final class Node<V> {
+
+        // 是否为叶子节点
+        final boolean isLeaf;
+
+        // 关键字个数
+        int size;
+
+        // 所有关键字的公共前缀
+        String prefix = "";
+
+        // 关键字去掉公共前缀后的后缀，多预留一个位置用于分裂前的溢出
+        final String[] suffixes;
+
+        // 叶子节点的值，与suffixes一一对应
+        final Object[] values;
+
+        // 非叶子节点的子节点，个数为 size + 1
+        final Node<V>[] children;
+
+        // 叶节点的前节点
+        Node<V> previous;
+
+        // 叶节点的后节点
+        Node<V> next;
+
+        Node(boolean isLeaf, int order) {
+            this.isLeaf = isLeaf;
+            this.suffixes = new String[order + 1];
+            if (isLeaf) {
+                values = new Object[order + 1];
+                children = null;
+            } else {
+                values = null;
+                children = new Node[order + 1];
+            }
+        }
+
+        // 第i个完整关键字
+        String key(int i) {
+            return prefix.isEmpty() ? suffixes[i] : prefix.concat(suffixes[i]);
+        }
+
+        // 关键字中小于key的个数（inclusive为true时为小于等于key的个数）
+        int rank(String key, boolean inclusive) {
+            String prefix = this.prefix;
+            int p = prefix.length();
+            int n = Math.min(p, key.length());
+            //先与公共前缀比较，不匹配时key小于或大于节点中所有关键字
+            for (int i = 0; i < n; i++) {
+                char a = key.charAt(i);
+                char b = prefix.charAt(i);
+                if (a != b) {
+                    return a < b ? 0 : size;
+                }
+            }
+            if (key.length() < p) {
+                return 0;
+            }
+            //二分查找只比较后缀
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int comp = compareSuffix(key, p, suffixes[mid]);
+                if (comp > 0 || (inclusive && comp == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        // 第一个大于等于key的位置
+        int lowerBound(String key) {
+            return rank(key, false);
+        }
+
+        // 关键字中小于等于key的个数，即应沿其继续搜索的子节点位置
+        int childIndex(String key) {
+            return rank(key, true);
+        }
+
+        // 第index个关键字是否等于key，index 由 lowerBound 得到
+        boolean matches(int index, String key) {
+            return index < size && key.length() == prefix.length() + suffixes[index].length()
+                    && key.startsWith(prefix) && compareSuffix(key, prefix.length(), suffixes[index]) == 0;
+        }
+
+        // 把第index个关键字设为key，key不以当前前缀开头时先缩短前缀
+        void setKey(int index, String key) {
+            widen(key);
+            suffixes[index] = key.substring(prefix.length());
+        }
+
+        // 缩短公共前缀，使key也以其开头；被去掉的部分补回到已有的后缀前面
+        void widen(String key) {
+            if (key.startsWith(prefix)) {
+                return;
+            }
+            int common = commonPrefix(prefix, key);
+            String dropped = prefix.substring(common);
+            for (int i = 0; i < size; i++) {
+                //跳过正在插入、尚未赋值的位置
+                if (suffixes[i] != null) {
+                    suffixes[i] = dropped.concat(suffixes[i]);
+                }
+            }
+            prefix = prefix.substring(0, common);
+        }
+
+        // 用有序的完整关键字 keys[from, from + count) 重新编码当前节点，公共前缀即首尾关键字的公共前缀
+        void encode(String[] keys, int from, int count) {
+            prefix = count == 0 ? "" : keys[from].substring(0, commonPrefix(keys[from], keys[from + count - 1]));
+            for (int i = 0; i < count; i++) {
+                suffixes[i] = keys[from + i].substring(prefix.length());
+            }
+            Arrays.fill(suffixes, count, suffixes.length, null);
+        }
+
+        // 所有完整关键字
+        String[] keys(int extra) {
+            String[] keys = new String[size + extra];
+            for (int i = 0; i < size; i++) {
+                keys[i] = key(i);
+            }
+            return keys;
+        }
+    }
+
+    // key从offset开始的部分与suffix比较
+    static int compareSuffix(String key, int offset, String suffix) {
+        int n = Math.min(key.length() - offset, suffix.length());
+        for (int i = 0; i < n; i++) {
+            char a = key.charAt(offset + i);
+            char b = suffix.charAt(i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return key.length() - offset - suffix.length();
+    }
+
+    static int commonPrefix(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < n && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public V get(String key) {
+        Node<V> node = root;
+        while (!node.isLeaf) {
+            node = node.children[node.childIndex(key)];
+        }
+        int index = node.lowerBound(key);
+        return node.matches(index, key) ? (V) node.values[index] : null;
+    }
+
+    public boolean containsKey(String key) {
+        Node<V> node = root;
+        while (!node.isLeaf) {
+            node = node.children[node.childIndex(key)];
+        }
+        return node.matches(node.lowerBound(key), key);
+    }
+
+    /**
+     * 插入或更新
+     *
+     * @return 原来与key关联的值，不存在时返回null
+     */
+    public V insertOrUpdate(String key, V value) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        oldValue = null;
+        Node<V> right = insert(root, key, value);
+        //根节点分裂，生成新的根节点
+        if (right != null) {
+            Node<V> parent = new Node<V>(false, order);
+            parent.suffixes[0] = splitKey;
+            parent.children[0] = root;
+            parent.children[1] = right;
+            parent.size = 1;
+            root = parent;
+            height++;
+        }
+        return (V) oldValue;
+    }
+
+    /**
+     * 删除
+     *
+     * @return 被删除的值，不存在时返回null
+     */
+    public V remove(String key) {
+        oldValue = null;
+        remove(root, key);
+        //根节点只剩一个子节点时与子节点合并
+        if (!root.isLeaf && root.size == 0) {
+            root = root.children[0];
+            height--;
+        }
+        return (V) oldValue;
+    }
+
+    // 向子树插入，节点分裂时返回分裂出的右节点
+    private Node<V> insert(Node<V> node, String key, V value) {
+        if (node.isLeaf) {
+            int index = node.lowerBound(key);
+            if (node.matches(index, key)) {
+                oldValue = node.values[index];
+                node.values[index] = value;
+                return null;
+            }
+            System.arraycopy(node.suffixes, index, node.suffixes, index + 1, node.size - index);
+            System.arraycopy(node.values, index, node.values, index + 1, node.size - index);
+            node.size++;
+            node.setKey(index, key);
+            node.values[index] = value;
+            size++;
+            return node.size > order ? splitLeaf(node) : null;
+        }
+        int index = node.childIndex(key);
+        Node<V> right = insert(node.children[index], key, value);
+        if (right == null) {
+            return null;
+        }
+        System.arraycopy(node.suffixes, index, node.suffixes, index + 1, node.size - index);
+        System.arraycopy(node.children, index + 1, node.children, index + 2, node.size - index);
+        node.size++;
+        node.setKey(index, splitKey);
+        node.children[index + 1] = right;
+        return node.size + 1 > order ? splitInternal(node) : null;
+    }
+
+    private Node<V> splitLeaf(Node<V> left) {
+        int leftSize = (order + 1) / 2 + (order + 1) % 2;
+        String[] keys = left.keys(0);
+        Node<V> right = new Node<V>(true, order);
+        right.size = left.size - leftSize;
+        right.encode(keys, leftSize, right.size);
+        System.arraycopy(left.values, leftSize, right.values, 0, right.size);
+        Arrays.fill(left.values, leftSize, left.size, null);
+        left.size = leftSize;
+        left.encode(keys, 0, leftSize);
+        //上推能区分左右两个节点的最短前缀
+        splitKey = shortestSeparator(keys[leftSize - 1], keys[leftSize]);
+        //设置链接
+        right.next = left.next;
+        if (left.next != null) {
+            left.next.previous = right;
+        }
+        right.previous = left;
+        left.next = right;
+        return right;
+    }
+
+    // 满足 lower < s <= upper 的最短字符串 s
+    static String shortestSeparator(String lower, String upper) {
+        return upper.substring(0, commonPrefix(lower, upper) + 1);
+    }
+
+    private Node<V> splitInternal(Node<V> left) {
+        int children = left.size + 1;
+        int leftChildren = children / 2 + children % 2;
+        String[] keys = left.keys(0);
+        Node<V> right = new Node<V>(false, order);
+        right.size = children - leftChildren - 1;
+        right.encode(keys, leftChildren, right.size);
+        System.arraycopy(left.children, leftChildren, right.children, 0, right.size + 1);
+        Arrays.fill(left.children, leftChildren, children, null);
+        left.size = leftChildren - 1;
+        left.encode(keys, 0, left.size);
+        splitKey = keys[left.size];
+        return right;
+    }
+
+    // 从子树删除，返回时由父节点处理该子树根节点的下溢
+    private void remove(Node<V> node, String key) {
+        if (node.isLeaf) {
+            int index = node.lowerBound(key);
+            if (node.matches(index, key)) {
+                oldValue = node.values[index];
+                System.arraycopy(node.suffixes, index + 1, node.suffixes, index, node.size - index - 1);
+                System.arraycopy(node.values, index + 1, node.values, index, node.size - index - 1);
+                node.size--;
+                node.suffixes[node.size] = null;
+                node.values[node.size] = null;
+                size--;
+            }
+            return;
+        }
+        int index = node.childIndex(key);
+        Node<V> child = node.children[index];
+        remove(child, key);
+        if (underflow(child)) {
+            rebalance(node, index);
+        }
+    }
+
+    private boolean underflow(Node<V> node) {
+        if (node.isLeaf) {
+            return node.size < order / 2;
+        }
+        return node.size + 1 < Math.max(2, (order + 1) / 2);
+    }
+
+    private boolean canLend(Node<V> node) {
+        if (node.isLeaf) {
+            return node.size > order / 2;
+        }
+        return node.size + 1 > Math.max(2, (order + 1) / 2);
+    }
+
+    // 第index个子节点不满足最小容量：先向左右兄弟借补，否则与兄弟合并
+    private void rebalance(Node<V> parent, int index) {
+        Node<V> child = parent.children[index];
+        Node<V> left = index > 0 ? parent.children[index - 1] : null;
+        Node<V> right = index < parent.size ? parent.children[index + 1] : null;
+        if (left != null && canLend(left)) {
+            borrowFromLeft(parent, index, left, child);
+        } else if (right != null && canLend(right)) {
+            borrowFromRight(parent, index, child, right);
+        } else if (left != null) {
+            merge(parent, index - 1, left, child);
+        } else if (right != null) {
+            merge(parent, index, child, right);
+        }
+    }
+
+    private void borrowFromLeft(Node<V> parent, int index, Node<V> left, Node<V> child) {
+        System.arraycopy(child.suffixes, 0, child.suffixes, 1, child.size);
+        child.size++;
+        if (child.isLeaf) {
+            System.arraycopy(child.values, 0, child.values, 1, child.size - 1);
+            child.setKey(0, left.key(left.size - 1));
+            child.values[0] = left.values[left.size - 1];
+            left.values[left.size - 1] = null;
+            parent.setKey(index - 1, child.key(0));
+        } else {
+            System.arraycopy(child.children, 0, child.children, 1, child.size);
+            child.setKey(0, parent.key(index - 1));
+            child.children[0] = left.children[left.size];
+            left.children[left.size] = null;
+            parent.setKey(index - 1, left.key(left.size - 1));
+        }
+        left.size--;
+        left.suffixes[left.size] = null;
+    }
+
+    private void borrowFromRight(Node<V> parent, int index, Node<V> child, Node<V> right) {
+        child.size++;
+        if (child.isLeaf) {
+            child.setKey(child.size - 1, right.key(0));
+            child.values[child.size - 1] = right.values[0];
+            System.arraycopy(right.suffixes, 1, right.suffixes, 0, right.size - 1);
+            System.arraycopy(right.values, 1, right.values, 0, right.size - 1);
+            right.values[right.size - 1] = null;
+            parent.setKey(index, right.key(0));
+        } else {
+            child.setKey(child.size - 1, parent.key(index));
+            child.children[child.size] = right.children[0];
+            parent.setKey(index, right.key(0));
+            System.arraycopy(right.suffixes, 1, right.suffixes, 0, right.size - 1);
+            System.arraycopy(right.children, 1, right.children, 0, right.size);
+            right.children[right.size] = null;
+        }
+        right.size--;
+        right.suffixes[right.size] = null;
+    }
+
+    // 把右节点并入左节点，并删除父节点中第index个关键字
+    private void merge(Node<V> parent, int index, Node<V> left, Node<V> right) {
+        String[] keys = left.keys(right.size + 1);
+        int count = left.size;
+        if (!left.isLeaf) {
+            keys[count++] = parent.key(index);
+        }
+        for (int i = 0; i < right.size; i++) {
+            keys[count++] = right.key(i);
+        }
+        left.encode(keys, 0, count);
+        if (left.isLeaf) {
+            System.arraycopy(right.values, 0, left.values, left.size, right.size);
+            //更新链表
+            left.next = right.next;
+            if (right.next != null) {
+                right.next.previous = left;
+            }
+        } else {
+            System.arraycopy(right.children, 0, left.children, left.size + 1, right.size + 1);
+        }
+        left.size = count;
+        System.arraycopy(parent.suffixes, index + 1, parent.suffixes, index, parent.size - index - 1);
+        System.arraycopy(parent.children, index + 2, parent.children, index + 1, parent.size - index - 1);
+        parent.size--;
+        parent.suffixes[parent.size] = null;
+        parent.children[parent.size + 1] = null;
+    }
+
+    public void printBPlusTree() {
+        print(root, 0);
+    }
+
+    private void print(Node<V> node, int index) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("层级：").append(index).append(node.isLeaf ? ",叶子节点，" : ",非叶子节点，")
+                .append("前缀为: ").append(node.prefix).append(", 后缀为: ");
+        for (int i = 0; i < node.size; i++) {
+            sb.append(node.suffixes[i]).append(' ');
+        }
+        System.out.println(sb);
+        if (!node.isLeaf) {
+            for (int i = 0; i <= node.size; i++) {
+                print(node.children[i], index + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.demo.structure.tree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * @ClassName WriteAheadLog
+ * @Description: B+树修改操作的预写日志
+ * 1.日志只追加，每条记录为 [length:4][crc32:4][op:1][key][value]，删除操作没有 value；
+ * 2.组提交：{@link #append} 只把记录放入内存缓冲区并返回日志序号，{@link #sync} 等待该序号落盘。
+ *   第一个发现未落盘的线程成为 leader，把缓冲区中所有记录一次写入并 force，
+ *   其余线程等待 leader 完成；leader 刷盘期间新追加的记录由下一个 leader 一起刷盘，
+ *   一次 fsync 确认一批写入；
+ * 3.{@link #replay} 按顺序重放日志，遇到长度或校验和不正确的记录（崩溃时写了一半）即停止，
+ *   并截断该记录之后的内容。
+ *
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+public class WriteAheadLog<K, V> implements Closeable {
+
+    static final byte PUT = 1;
+
+    static final byte REMOVE = 2;
+
+    // 记录头长度：length + crc32
+    private static final int RECORD_HEADER = 4 + 4;
+
+    private final FileChannel channel;
+
+    private final Codec<K> keyCodec;
+
+    private final Codec<V> valueCodec;
+
+    // 等待刷盘的记录
+    private ByteBuffer pending;
+
+    // 已追加的最大日志序号
+    private long appendedLsn;
+
+    // 已落盘的最大日志序号
+    private long durableLsn;
+
+    // 是否有 leader 正在刷盘
+    private boolean flushing;
+
+    // 刷盘失败的异常，之后的 sync 都会失败
+    private IOException failure;
+
+    private final CRC32 crc = new CRC32();
+
+    public WriteAheadLog(Path path, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.pending = ByteBuffer.allocate(64 * recordSize());
+    }
+
+    private int recordSize() {
+        return RECORD_HEADER + 1 + keyCodec.size() + valueCodec.size();
+    }
+
+    /**
+     * 追加一条插入或更新记录
+     *
+     * @return 日志序号，传给 {@link #sync} 等待落盘
+     */
+    public synchronized long appendPut(K key, V value) {
+        return append(PUT, key, value);
+    }
+
+    /**
+     * 追加一条删除记录
+     *
+     * @return 日志序号，传给 {@link #sync} 等待落盘
+     */
+    public synchronized long appendRemove(K key) {
+        return append(REMOVE, key, null);
+    }
+
+    private long append(byte op, K key, V value) {
+        if (pending.remaining() < recordSize()) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.position(start + RECORD_HEADER);
+        pending.put(op);
+        try {
+            keyCodec.encode(pending, key);
+            if (op == PUT) {
+                valueCodec.encode(pending, value);
+            }
+        } catch (RuntimeException e) {
+            //丢弃编码了一半的记录，否则重放会在这里停止并截断之后的所有记录
+            pending.position(start);
+            throw e;
+        }
+        int length = pending.position() - start - RECORD_HEADER;
+        crc.reset();
+        crc.update(pending.array(), start + RECORD_HEADER, length);
+        pending.putInt(start, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+        return ++appendedLsn;
+    }
+
+    /**
+     * 等待日志序号 lsn 及之前的记录全部落盘
+     */
+    public void sync(long lsn) throws IOException {
+        ByteBuffer batch;
+        long batchLsn;
+        synchronized (this) {
+            for (;;) {
+                checkFailure();
+                if (durableLsn >= lsn) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            //成为 leader，取走当前缓冲区中的所有记录
+            flushing = true;
+            pending.flip();
+            batch = pending;
+            batchLsn = appendedLsn;
+            pending = ByteBuffer.allocate(batch.capacity());
+        }
+        IOException error = null;
+        try {
+            long position = channel.size();
+            while (batch.hasRemaining()) {
+                position += channel.write(batch, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            flushing = false;
+            if (error != null) {
+                failure = error;
+            } else {
+                durableLsn = Math.max(durableLsn, batchLsn);
+            }
+            notifyAll();
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * 刷盘失败过时抛出 IOException
+     */
+    public synchronized void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("write-ahead log failed", failure);
+        }
+    }
+
+    /**
+     * @return 已落盘的最大日志序号；刷盘失败后不再增加
+     */
+    public synchronized long durableLsn() {
+        return durableLsn;
+    }
+
+    /**
+     * @return 日志文件大小（不含未落盘的记录）
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * 清空日志，调用方需保证期间没有新的追加；已追加的记录视为已落盘
+     */
+    public synchronized void truncate() throws IOException {
+        while (flushing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+        pending.clear();
+        channel.truncate(0);
+        channel.force(true);
+        durableLsn = appendedLsn;
+        notifyAll();
+    }
+
+    /**
+     * 按顺序重放日志中的记录，删除记录的 value 为 null
+     *
+     * @return 重放的记录数
+     */
+    public synchronized long replay(BiConsumer<K, V> put, BiConsumer<K, V> remove) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        long count = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        ByteBuffer payload = ByteBuffer.allocate(recordSize());
+        while (position + RECORD_HEADER <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || length > payload.capacity() || position + RECORD_HEADER + length > size) {
+                break;
+            }
+            payload.clear();
+            payload.limit(length);
+            readFully(payload, position + RECORD_HEADER);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            payload.flip();
+            byte op = payload.get();
+            K key = keyCodec.decode(payload);
+            if (op == PUT) {
+                put.accept(key, valueCodec.decode(payload));
+            } else if (op == REMOVE) {
+                remove.accept(key, null);
+            } else {
+                break;
+            }
+            position += RECORD_HEADER + length;
+            count++;
+        }
+        //截断崩溃时未写完整的尾部记录
+        if (position < size) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        return count;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of log");
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        long lsn;
+        synchronized (this) {
+            lsn = appendedLsn;
+        }
+        try {
+            sync(lsn);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -1,173 +1,1005 @@
 package com.example.demo;
 
 import com.example.demo.structure.tree.BPlusTree;
+import com.example.demo.structure.tree.BPlusTreeAggregation;
+import com.example.demo.structure.tree.BPlusTreeBuilder;
+import com.example.demo.structure.tree.BPlusTreeCursor;
+import com.example.demo.structure.tree.BPlusTreeFile;
+import com.example.demo.structure.tree.BPlusTreeStats;
+import com.example.demo.structure.tree.Codec;
+import com.example.demo.structure.tree.ConcurrentBPlusTree;
+import com.example.demo.structure.tree.CopyOnWriteBPlusTree;
+import com.example.demo.structure.tree.DiskBPlusTree;
+import com.example.demo.structure.tree.DurableBPlusTree;
+import com.example.demo.structure.tree.LongBPlusTree;
+import com.example.demo.structure.tree.MortonBPlusTree;
+import com.example.demo.structure.tree.MortonKey;
+import com.example.demo.structure.tree.PartitionedBPlusTree;
+import com.example.demo.structure.tree.PostingList;
+import com.example.demo.structure.tree.PostingListIndex;
+import com.example.demo.structure.tree.StringBPlusTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @ClassName BPlusTreeTest
- * @Description: TODO
+ * @Description: B+树及其变体的正确性测试，以 TreeMap 为参照；性能测试见 benchmarks 模块
  * @Author zk
  * @Date 2020/12/10
  **/
-public class BPlusTreeTest {
-    // 测试
-    public static void main(String[] args) {
+class BPlusTreeTest {
 
-        int size = 10;
-        int order = 3;
-        testRandomInsert(size, order);
+    private static final int SIZE = 2000;
 
-        testOrderInsert(size, order);
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testRandomInsert(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        Map<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE; i++) {
+            int randomNumber = random.nextInt(SIZE * 10);
+            tree.insertOrUpdate(randomNumber, i);
+            expected.put(randomNumber, i);
+        }
+        assertContentEquals(expected, tree);
+    }
 
-        testRandomSearch(size, order);
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testOrderInsert(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        Map<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < SIZE; i++) {
+            tree.insertOrUpdate(i, i);
+            expected.put(i, i);
+        }
+        assertContentEquals(expected, tree);
+    }
 
-        testOrderSearch(size, order);
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testRandomSearch(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        Random random = new Random(order);
+        boolean[] a = new boolean[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            a[randomNumber] = true;
+            tree.insertOrUpdate(randomNumber, randomNumber);
+        }
+        for (int j = 0; j < SIZE; j++) {
+            int randomNumber = random.nextInt(SIZE);
+            assertEquals(a[randomNumber] ? Integer.valueOf(randomNumber) : null, tree.get(randomNumber),
+                    "得不到数据:" + randomNumber);
+        }
+    }
 
-        testRandomRemove(size, order);
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testOrderSearch(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        for (int i = 0; i < SIZE; i++) {
+            tree.insertOrUpdate(i, i);
+        }
+        for (int j = 0; j < SIZE; j++) {
+            assertEquals(Integer.valueOf(j), tree.get(j), "得不到数据:" + j);
+        }
+        assertNull(tree.get(SIZE));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testRandomRemove(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        Map<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 4; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            if (random.nextBoolean()) {
+                assertEquals(expected.remove(randomNumber), tree.remove(randomNumber), "删除数据错误:" + randomNumber);
+            } else {
+                tree.insertOrUpdate(randomNumber, i);
+                expected.put(randomNumber, i);
+            }
+        }
+        assertContentEquals(expected, tree);
+        for (Integer key : new ArrayList<Integer>(expected.keySet())) {
+            assertEquals(expected.remove(key), tree.remove(key), "得不到数据:" + key);
+        }
+        assertFalse(tree.scan(null, null).next());
+    }
 
-        testOrderRemove(size, order);
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testOrderRemove(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        for (int i = 0; i < SIZE; i++) {
+            tree.insertOrUpdate(i, i);
+        }
+        for (int j = 0; j < SIZE; j++) {
+            assertEquals(Integer.valueOf(j), tree.remove(j), "得不到数据:" + j);
+        }
+        assertEquals(0, tree.getHeight());
     }
 
-    private static void testOrderRemove(int size, int order) {
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testRangeScan(int order) {
         BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
-        System.out.println("\nTest order remove " + size + " datas, of order:"
-                + order);
-        System.out.println("Begin order insert...");
-        for (int i = 0; i < size; i++) {
+        for (int i = 0; i < SIZE; i++) {
             tree.insertOrUpdate(i, i);
         }
-        tree.printBPlusTree();
-        System.out.println("Begin order remove...");
-        long current = System.currentTimeMillis();
-        for (int j = 0; j < size; j++) {
-            if (tree.remove(j) == null) {
-                System.err.println("得不到数据:" + j);
-                break;
+        int from = SIZE / 4, to = SIZE - SIZE / 4;
+        BPlusTreeCursor<Integer, Integer> cursor = tree.scan(from, to);
+        int expected = from;
+        while (cursor.next()) {
+            assertEquals(expected++, cursor.getKey().intValue(), "升序扫描顺序错误");
+        }
+        assertEquals(to, expected, "升序扫描缺少数据");
+        cursor = tree.scanDescending(from, to);
+        expected = to - 1;
+        while (cursor.next()) {
+            assertEquals(expected--, cursor.getKey().intValue(), "降序扫描顺序错误");
+        }
+        assertEquals(from - 1, expected, "降序扫描缺少数据");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testBulkLoad(int order) {
+        List<Map.Entry<Integer, Integer>> sorted = new ArrayList<Map.Entry<Integer, Integer>>();
+        Map<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        for (int i = 0; i < SIZE; i++) {
+            sorted.add(new AbstractMap.SimpleEntry<Integer, Integer>(i, i));
+            expected.put(i, i);
+        }
+        BPlusTree<Integer, Integer> tree = new BPlusTreeBuilder<Integer, Integer>(order)
+                .fillFactor(0.8).build(sorted.iterator());
+        assertContentEquals(expected, tree);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testBatch(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        Map<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        Random random = new Random(order);
+        for (int round = 0; round < 10; round++) {
+            Map<Integer, Integer> batch = new HashMap<Integer, Integer>();
+            for (int i = 0; i < SIZE / 10; i++) {
+                int randomNumber = random.nextInt(SIZE * 10);
+                batch.put(randomNumber, round);
             }
+            tree.putAll(batch);
+            expected.putAll(batch);
+        }
+        assertContentEquals(expected, tree);
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < SIZE; i++) {
+            keys.add(random.nextInt(SIZE * 10));
+        }
+        Map<Integer, Integer> found = tree.getAll(keys);
+        for (Integer key : keys) {
+            assertEquals(expected.get(key), found.get(key), "得不到数据:" + key);
         }
-        long duration = System.currentTimeMillis() - current;
-        System.out.println("time elpsed for duration: " + duration);
-        tree.printBPlusTree();
-        System.out.println(tree.getHeight());
     }
 
-    private static void testRandomRemove(int size, int order) {
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testRankSelect(int order) {
         BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
-        System.out.println("\nTest random remove " + size + " datas, of order:"
-                + order);
-        Random random = new Random();
-        boolean[] a = new boolean[size + 10];
-        List<Integer> list = new ArrayList<Integer>();
-        int randomNumber = 0;
-        System.out.println("Begin random insert...");
-        for (int i = 0; i < size; i++) {
-            randomNumber = random.nextInt(size);
-            a[randomNumber] = true;
-            list.add(randomNumber);
-            tree.insertOrUpdate(randomNumber, randomNumber);
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 4; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            if (random.nextInt(3) == 0) {
+                tree.remove(randomNumber);
+                expected.remove(randomNumber);
+            } else if (random.nextInt(10) == 0) {
+                Map<Integer, Integer> batch = new HashMap<Integer, Integer>();
+                for (int j = 0; j < order * 3; j++) {
+                    batch.put(randomNumber + j, i);
+                }
+                tree.putAll(batch);
+                expected.putAll(batch);
+            } else {
+                tree.insertOrUpdate(randomNumber, i);
+                expected.put(randomNumber, i);
+            }
         }
-        tree.printBPlusTree();
-        System.out.println("Begin random remove...");
-        long current = System.currentTimeMillis();
-        for (int j = 0; j < size; j++) {
-            randomNumber = list.get(j);
-            if (a[randomNumber]) {
-                if (tree.remove(randomNumber) == null) {
-                    System.err.println("得不到数据:" + randomNumber);
-                    break;
-                } else {
-                    a[randomNumber] = false;
+        assertContentEquals(expected, tree);
+        int index = 0;
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(index, tree.rank(entry.getKey()), "排名错误:" + entry.getKey());
+            assertEquals(entry, tree.select(index), "按排名查找错误:" + index);
+            index++;
+        }
+        for (int i = 0; i < SIZE; i++) {
+            int from = random.nextInt(SIZE * 2) - SIZE / 2;
+            int to = from + random.nextInt(SIZE);
+            assertEquals(expected.subMap(from, to).size(), tree.countRange(from, to), "区间计数错误:" + from + "," + to);
+        }
+        assertEquals(expected.headMap(SIZE / 2).size(), tree.countRange(null, SIZE / 2));
+        assertEquals(expected.size(), tree.countRange(null, null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testBloomFilter(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        Map<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE / 2; i++) {
+            tree.insertOrUpdate(i * 2, i);
+            expected.put(i * 2, i);
+        }
+        tree.enableBloomFilter(10);
+        for (int i = 0; i < SIZE * 4; i++) {
+            int randomNumber = random.nextInt(SIZE * 4);
+            if (random.nextInt(3) == 0) {
+                tree.remove(randomNumber);
+                expected.remove(randomNumber);
+            } else if (random.nextInt(10) == 0) {
+                Map<Integer, Integer> batch = new HashMap<Integer, Integer>();
+                batch.put(randomNumber, i);
+                batch.put(randomNumber + 1, i);
+                tree.putAll(batch);
+                expected.putAll(batch);
+            } else {
+                tree.insertOrUpdate(randomNumber, i);
+                expected.put(randomNumber, i);
+            }
+            int key = random.nextInt(SIZE * 8);
+            assertEquals(expected.get(key), tree.get(key), "查找错误:" + key);
+        }
+        assertContentEquals(expected, tree);
+        tree.getStats().resetCounters();
+        for (int key = SIZE * 4 + 1; key < SIZE * 8; key++) {
+            assertNull(tree.get(key));
+        }
+        //误判率约1%，绝大多数未命中不下降查找
+        assertTrue(tree.getStats().getBloomFilterNegatives() > SIZE * 4 * 0.9);
+        tree.disableBloomFilter();
+        assertEquals(expected.get(0), tree.get(0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testAggregate(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        tree.setAggregation(BPlusTreeAggregation.sum(Integer::longValue));
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 4; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            int value = random.nextInt(1000) - 500;
+            if (random.nextInt(3) == 0) {
+                tree.remove(randomNumber);
+                expected.remove(randomNumber);
+            } else if (random.nextInt(10) == 0) {
+                Map<Integer, Integer> batch = new HashMap<Integer, Integer>();
+                for (int j = 0; j < order * 3; j++) {
+                    batch.put(randomNumber + j, value + j);
                 }
+                tree.putAll(batch);
+                expected.putAll(batch);
+            } else {
+                tree.insertOrUpdate(randomNumber, value);
+                expected.put(randomNumber, value);
             }
+            //修改与查询交替进行，覆盖缓存失效后的重建
+            int from = random.nextInt(SIZE + 100) - 50;
+            int to = from + random.nextInt(SIZE / 2);
+            assertEquals(sum(expected.subMap(from, to)), tree.aggregate(from, to), "区间聚合错误:" + from + "," + to);
+        }
+        assertEquals(sum(expected), tree.aggregate(null, null));
+        assertEquals(sum(expected.headMap(SIZE / 3)), tree.aggregate(null, SIZE / 3));
+        assertEquals(sum(expected.tailMap(SIZE / 3)), tree.aggregate(SIZE / 3, null));
+        assertEquals(0, tree.aggregate(SIZE / 3, SIZE / 3));
+        tree.setAggregation(BPlusTreeAggregation.max(Integer::longValue));
+        for (int i = 0; i < SIZE; i++) {
+            int from = random.nextInt(SIZE);
+            int to = from + random.nextInt(SIZE / 2);
+            long max = Long.MIN_VALUE;
+            for (int value : expected.subMap(from, to).values()) {
+                max = Math.max(max, value);
+            }
+            assertEquals(max, tree.aggregate(from, to), "区间最大值错误:" + from + "," + to);
         }
-        long duration = System.currentTimeMillis() - current;
-        System.out.println("time elpsed for duration: " + duration);
-        tree.printBPlusTree();
-        System.out.println(tree.getHeight());
     }
 
-    private static void testOrderSearch(int size, int order) {
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testParallelStream(int order) {
         BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
-        System.out.println("\nTest order search " + size + " datas, of order:"
-                + order);
-        System.out.println("Begin order insert...");
-        for (int i = 0; i < size; i++) {
-            tree.insertOrUpdate(i, i);
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 10; i++) {
+            int randomNumber = random.nextInt(SIZE * 20);
+            tree.insertOrUpdate(randomNumber, i);
+            expected.put(randomNumber, i);
         }
-        tree.printBPlusTree();
-        System.out.println("Begin order search...");
-        long current = System.currentTimeMillis();
-        for (int j = 0; j < size; j++) {
-            if (tree.get(j) == null) {
-                System.err.println("得不到数据:" + j);
-                break;
+        assertEquals(new ArrayList<Map.Entry<Integer, Integer>>(expected.entrySet()),
+                tree.parallelStream(null, null).collect(Collectors.toList()));
+        for (int i = 0; i < 100; i++) {
+            int from = random.nextInt(SIZE * 22) - SIZE;
+            int to = from + random.nextInt(SIZE * 10);
+            List<Long> projected = new ArrayList<Long>();
+            for (Map.Entry<Integer, Integer> entry : expected.subMap(from, to).entrySet()) {
+                if (entry.getValue() % 3 == 0) {
+                    projected.add((long) entry.getKey() * entry.getValue());
+                }
             }
+            assertEquals(projected, tree.parallelStream(from, to, (key, value) -> value % 3 == 0,
+                    (key, value) -> (long) key * value).collect(Collectors.toList()), "区间扫描错误:" + from + "," + to);
+            assertEquals(expected.subMap(from, to).size(), tree.parallelStream(from, to).count());
         }
-        long duration = System.currentTimeMillis() - current;
-        System.out.println("time elpsed for duration: " + duration);
+        assertEquals(0, tree.parallelStream(SIZE, SIZE).count());
     }
 
-    private static void testRandomSearch(int size, int order) {
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testLazyDelete(int order) {
         BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
-        System.out.println("\nTest random search " + size + " datas, of order:"
-                + order);
-        Random random = new Random();
-        boolean[] a = new boolean[size + 10];
-        int randomNumber = 0;
-        System.out.println("Begin random insert...");
-        for (int i = 0; i < size; i++) {
-            randomNumber = random.nextInt(size);
-            a[randomNumber] = true;
-            tree.insertOrUpdate(randomNumber, randomNumber);
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        tree.setAggregation(BPlusTreeAggregation.sum(Integer::longValue));
+        tree.setLazyDelete(true);
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 4; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            if (random.nextInt(2) == 0) {
+                assertEquals(expected.remove(randomNumber), tree.remove(randomNumber), "删除数据错误:" + randomNumber);
+            } else if (random.nextInt(10) == 0) {
+                Map<Integer, Integer> batch = new HashMap<Integer, Integer>();
+                for (int j = 0; j < order * 3; j++) {
+                    batch.put(randomNumber + j, i);
+                }
+                tree.putAll(batch);
+                expected.putAll(batch);
+            } else {
+                tree.insertOrUpdate(randomNumber, i);
+                expected.put(randomNumber, i);
+            }
+            if (i % 100 == 0) {
+                tree.compact(order);
+            }
+            int key = random.nextInt(SIZE);
+            assertEquals(expected.get(key), tree.get(key), "查找错误:" + key);
+            assertEquals(expected.headMap(key).size(), tree.rank(key), "排名错误:" + key);
+        }
+        BPlusTreeStats stats = tree.getStats();
+        assertTrue(stats.getTombstones() > 0);
+        assertContentEquals(expected, tree);
+        assertEquals(sum(expected), tree.aggregate(null, null));
+        assertEquals(expected.size(), tree.parallelStream(null, null).count());
+        int index = 0;
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry, tree.select(index++));
+        }
+        //批量整理掉全部墓碑后与正常删除的树一致
+        long tombstones = stats.getTombstones();
+        long purged = 0;
+        while (stats.getTombstones() > 0) {
+            purged += tree.compact(10);
         }
-        tree.printBPlusTree();
-        System.out.println("Begin random search...");
-        long current = System.currentTimeMillis();
-        for (int j = 0; j < size; j++) {
-            randomNumber = random.nextInt(size);
-            if (a[randomNumber]) {
-                if (tree.get(randomNumber) == null) {
-                    System.err.println("得不到数据:" + randomNumber);
+        assertEquals(tombstones, purged);
+        assertContentEquals(expected, tree);
+        long[] levelNodeCounts = stats.getLevelNodeCounts();
+        stats.recount();
+        assertArrayEquals(levelNodeCounts, stats.getLevelNodeCounts());
+        assertEquals(expected.size(), stats.getSize());
+        assertEquals(0, stats.getTombstones());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testCompute(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        tree.setAggregation(BPlusTreeAggregation.sum(Integer::longValue));
+        tree.setLazyDelete(order % 2 == 0);
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 4; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            int delta = random.nextInt(5) - 1;
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(expected.merge(randomNumber, delta, Integer::sum),
+                            tree.merge(randomNumber, delta, Integer::sum));
                     break;
+                case 1:
+                    //计数减到0时删除
+                    BiFunction<Integer, Integer, Integer> decrement = (key, value) -> value == null || value <= 1 ? null : value - 1;
+                    assertEquals(expected.compute(randomNumber, decrement), tree.compute(randomNumber, decrement));
+                    break;
+                default:
+                    assertEquals(expected.putIfAbsent(randomNumber, i), tree.putIfAbsent(randomNumber, i));
+            }
+        }
+        assertContentEquals(expected, tree);
+        assertEquals(sum(expected), tree.aggregate(null, null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testMortonBox(int order) {
+        MortonBPlusTree<Integer> tree = new MortonBPlusTree<Integer>(order);
+        Map<MortonKey, Integer> expected = new HashMap<MortonKey, Integer>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 5; i++) {
+            int x = random.nextInt(400) - 200;
+            int y = random.nextInt(400) - 200;
+            tree.insertOrUpdate(x, y, i);
+            expected.put(MortonKey.of(x, y), i);
+        }
+        for (int i = 0; i < 200; i++) {
+            int minX = random.nextInt(500) - 250;
+            int minY = random.nextInt(500) - 250;
+            int maxX = minX + random.nextInt(100);
+            int maxY = minY + random.nextInt(100);
+            Map<MortonKey, Integer> inBox = new HashMap<MortonKey, Integer>();
+            for (Map.Entry<MortonKey, Integer> entry : expected.entrySet()) {
+                MortonKey key = entry.getKey();
+                if (key.getX() >= minX && key.getX() <= maxX && key.getY() >= minY && key.getY() <= maxY) {
+                    inBox.put(key, entry.getValue());
                 }
             }
+            List<Map.Entry<MortonKey, Integer>> found = tree.box(minX, minY, maxX, maxY);
+            assertEquals(inBox.size(), found.size(), "矩形查询数量错误");
+            for (Map.Entry<MortonKey, Integer> entry : found) {
+                assertEquals(inBox.get(entry.getKey()), entry.getValue(), "矩形查询错误:" + entry.getKey());
+            }
+        }
+        assertTrue(tree.box(10, 10, 0, 0).isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testHashIndex(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            tree.insertOrUpdate(randomNumber, i);
+            expected.put(randomNumber, i);
+        }
+        tree.enableHashIndex();
+        for (int i = 0; i < SIZE * 4; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            if (i == SIZE * 2) {
+                tree.setLazyDelete(true);
+            }
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.remove(randomNumber), tree.remove(randomNumber));
+                    break;
+                case 1:
+                    Map<Integer, Integer> batch = new HashMap<Integer, Integer>();
+                    for (int j = 0; j < order * 3; j++) {
+                        batch.put(randomNumber + j, i);
+                    }
+                    tree.putAll(batch);
+                    expected.putAll(batch);
+                    break;
+                case 2:
+                    assertEquals(expected.merge(randomNumber, 1, Integer::sum), tree.merge(randomNumber, 1, Integer::sum));
+                    break;
+                default:
+                    tree.insertOrUpdate(randomNumber, i);
+                    expected.put(randomNumber, i);
+            }
+            if (i % 50 == 0) {
+                tree.compact(order);
+            }
+            int key = random.nextInt(SIZE + order * 3);
+            assertEquals(expected.get(key), tree.get(key), "哈希索引查找错误:" + key);
+        }
+        while (tree.getStats().getTombstones() > 0) {
+            tree.compact(SIZE);
         }
-        long duration = System.currentTimeMillis() - current;
-        System.out.println("time elpsed for duration: " + duration);
+        assertContentEquals(expected, tree);
+        for (int key = -1; key <= SIZE + order * 3; key++) {
+            assertEquals(expected.get(key), tree.get(key), "哈希索引查找错误:" + key);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testRepack(int order) {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        tree.setAggregation(BPlusTreeAggregation.sum(Integer::longValue));
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 5; i++) {
+            int randomNumber = random.nextInt(SIZE * 10);
+            tree.insertOrUpdate(randomNumber, i);
+            expected.put(randomNumber, i);
+        }
+        BPlusTreeStats stats = tree.getStats();
+        double fill = stats.getLeafFillFactor();
+        //分片执行，期间穿插读写
+        while (tree.repack(1.0, 2)) {
+            int randomNumber = random.nextInt(SIZE * 10);
+            tree.insertOrUpdate(randomNumber, -1);
+            expected.put(randomNumber, -1);
+            assertEquals(expected.get(randomNumber + 1), tree.get(randomNumber + 1));
+        }
+        assertTrue(stats.getLeafFillFactor() > fill, "重新装填后填充率没有提高");
+        //没有写入时再装填一遍，叶子节点数不会增加
+        long leaves = stats.getLeafCount();
+        while (tree.repack(1.0, 2)) {
+        }
+        assertTrue(stats.getLeafCount() <= leaves);
+        assertContentEquals(expected, tree);
+        assertEquals(sum(expected), tree.aggregate(null, null));
+        assertEquals(expected.headMap(SIZE).size(), tree.rank(SIZE));
+        long[] levelNodeCounts = stats.getLevelNodeCounts();
+        stats.recount();
+        assertArrayEquals(levelNodeCounts, stats.getLevelNodeCounts());
+        for (int i = 0; i < SIZE * 5; i++) {
+            int randomNumber = random.nextInt(SIZE * 10);
+            assertEquals(expected.remove(randomNumber), tree.remove(randomNumber));
+        }
+        assertContentEquals(expected, tree);
     }
 
-    private static void testRandomInsert(int size, int order) {
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testAppendSplit(int order) {
         BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
-        System.out.println("\nTest random insert " + size + " datas, of order:"
-                + order);
-        Random random = new Random();
-        int randomNumber = 0;
-        long current = System.currentTimeMillis();
-        for (int i = 0; i < size; i++) {
-            randomNumber = random.nextInt(size * 10);
-            System.out.print(randomNumber + " ");
+        BPlusTree<Integer, Integer> midpoint = new BPlusTree<Integer, Integer>(order);
+        Map<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        tree.setSplitPolicy(BPlusTree.SplitPolicy.APPEND);
+        for (int i = 0; i < SIZE * 5; i++) {
+            tree.insertOrUpdate(i, i);
+            midpoint.insertOrUpdate(i, i);
+            expected.put(i, i);
+        }
+        assertContentEquals(expected, tree);
+        assertTrue(tree.getStats().getLeafFillFactor() > 0.9);
+        assertTrue(tree.getStats().getLeafCount() < midpoint.getStats().getLeafCount());
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 5; i++) {
+            int randomNumber = random.nextInt(SIZE * 5);
+            if (random.nextBoolean()) {
+                assertEquals(expected.remove(randomNumber), tree.remove(randomNumber));
+            } else {
+                tree.insertOrUpdate(randomNumber, i);
+                expected.put(randomNumber, i);
+            }
+        }
+        assertContentEquals(expected, tree);
+        //随机写入只在最右侧叶子节点按追加分裂，其余叶子节点与 MIDPOINT 一样至少半满
+        BPlusTree<Integer, Integer> randomAppend = new BPlusTree<Integer, Integer>(order);
+        BPlusTree<Integer, Integer> randomMidpoint = new BPlusTree<Integer, Integer>(order);
+        randomAppend.setSplitPolicy(BPlusTree.SplitPolicy.APPEND);
+        for (int i = 0; i < SIZE * 20; i++) {
+            int randomNumber = random.nextInt(SIZE * 100);
+            randomAppend.insertOrUpdate(randomNumber, i);
+            randomMidpoint.insertOrUpdate(randomNumber, i);
+        }
+        BPlusTreeStats appendStats = randomAppend.getStats();
+        BPlusTreeStats midpointStats = randomMidpoint.getStats();
+        assertTrue(appendStats.getLeafCount() <= midpointStats.getLeafCount() + 2,
+                "随机写入产生了未装满的叶子节点:" + appendStats.getLeafCount() + " > " + midpointStats.getLeafCount());
+        assertTrue(appendStats.getLeafFillFactor() >= midpointStats.getLeafFillFactor() - 0.01);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 5, 16})
+    void testPostingList(int order) {
+        PostingListIndex<Integer> index = new PostingListIndex<Integer>(order);
+        TreeMap<Integer, TreeSet<Long>> expected = new TreeMap<Integer, TreeSet<Long>>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 20; i++) {
+            int key = random.nextInt(20);
+            //大部分编号按升序追加，少量乱序插入和删除
+            long id = random.nextInt(10) == 0 ? random.nextInt(i + 1) : i * 1000L;
+            TreeSet<Long> ids = expected.computeIfAbsent(key, k -> new TreeSet<Long>());
+            if (random.nextInt(8) == 0) {
+                assertEquals(ids.remove(id), index.remove(key, id));
+                if (ids.isEmpty()) {
+                    expected.remove(key);
+                }
+            } else {
+                assertEquals(ids.add(id), index.add(key, id));
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<Integer, TreeSet<Long>> entry : expected.entrySet()) {
+            long[] ids = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+            assertArrayEquals(ids, index.get(entry.getKey()).toArray());
+            assertEquals(PostingList.of(ids), index.get(entry.getKey()));
+            for (long id : ids) {
+                assertTrue(index.contains(entry.getKey(), id));
+                assertEquals(entry.getValue().contains(id + 1), index.contains(entry.getKey(), id + 1));
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            int a = random.nextInt(20);
+            int b = random.nextInt(20);
+            TreeSet<Long> both = new TreeSet<Long>(expected.getOrDefault(a, new TreeSet<Long>()));
+            both.retainAll(expected.getOrDefault(b, new TreeSet<Long>()));
+            assertArrayEquals(both.stream().mapToLong(Long::longValue).toArray(), index.and(a, b).toArray());
+        }
+        assertTrue(index.and(0, 100).isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testLongKeyRandomRemove(int order) {
+        LongBPlusTree<Long> tree = new LongBPlusTree<Long>(order);
+        Random random = new Random(order);
+        List<Long> list = new ArrayList<Long>();
+        for (int i = 0; i < SIZE; i++) {
+            long randomNumber = random.nextLong();
+            list.add(randomNumber);
             tree.insertOrUpdate(randomNumber, randomNumber);
         }
-        long duration = System.currentTimeMillis() - current;
-        System.out.println("time elpsed for duration: " + duration);
-        tree.printBPlusTree();
-        System.out.println(tree.getHeight());
+        for (Long key : list) {
+            assertEquals(key, tree.get(key), "得不到数据:" + key);
+        }
+        for (Long key : list) {
+            assertEquals(key, tree.remove(key));
+        }
+        assertEquals(0, tree.size());
+        assertEquals(1, tree.getHeight());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testStringKeyRandomRemove(int order) {
+        StringBPlusTree<Integer> tree = new StringBPlusTree<Integer>(order);
+        Map<String, Integer> expected = new TreeMap<String, Integer>();
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 4; i++) {
+            String url = "https://example.com/tenant-" + random.nextInt(3) + "/item/" + random.nextInt(SIZE);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(url), tree.remove(url), "删除数据错误:" + url);
+            } else {
+                assertEquals(expected.put(url, i), tree.insertOrUpdate(url, i));
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), tree.get(entry.getKey()), "得不到数据:" + entry.getKey());
+        }
+        assertFalse(tree.containsKey("https://example.com/tenant-3/item/0"));
     }
 
-    private static void testOrderInsert(int size, int order) {
+    @ParameterizedTest
+    @ValueSource(ints = {3, 4, 16})
+    void testStats(int order) throws JMException {
         BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(order);
-        System.out.println("\nTest order insert " + size + " datas, of order:"
-                + order);
-        long current = System.currentTimeMillis();
-        for (int i = 0; i < size; i++) {
+        Random random = new Random(order);
+        for (int i = 0; i < SIZE * 4; i++) {
+            int randomNumber = random.nextInt(SIZE);
+            if (random.nextBoolean()) {
+                tree.remove(randomNumber);
+            } else {
+                tree.insertOrUpdate(randomNumber, i);
+            }
+            tree.get(randomNumber);
+        }
+        BPlusTreeStats stats = tree.getStats();
+        long[] levelNodeCounts = stats.getLevelNodeCounts();
+        long size = stats.getSize();
+        assertTrue(stats.getLeafSplits() > 0 && stats.getLeafMerges() > 0);
+        assertEquals(SIZE * 4, stats.getLookups());
+        //增量维护的结构统计与重新遍历的结果一致
+        stats.recount();
+        assertArrayEquals(stats.getLevelNodeCounts(), levelNodeCounts);
+        assertEquals(stats.getSize(), size);
+        assertEquals(1, levelNodeCounts[0]);
+        ObjectName name = stats.register("test-" + order);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(size, server.getAttribute(name, "Size"));
+            assertEquals(stats.getLeafFillFactor(), server.getAttribute(name, "LeafFillFactor"));
+        } finally {
+            stats.unregister(name);
+        }
+    }
+
+    @Test
+    void testConcurrentInsert() throws InterruptedException {
+        final ConcurrentBPlusTree<Integer, Integer> tree = new ConcurrentBPlusTree<Integer, Integer>(4);
+        final int threads = 4;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < SIZE; i++) {
+                    tree.insertOrUpdate(i * threads + offset, i);
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (int j = 0; j < SIZE * threads; j++) {
+            assertEquals(Integer.valueOf(j / threads), tree.get(j), "得不到数据:" + j);
+        }
+        assertEquals(SIZE * threads, tree.size());
+    }
+
+    @Test
+    void testPartitioned() throws InterruptedException {
+        //边界偏向小关键字，大部分写入落在最后一个分区
+        final PartitionedBPlusTree<Integer, Integer> tree =
+                new PartitionedBPlusTree<Integer, Integer>(4, Arrays.asList(SIZE / 8, SIZE / 4, SIZE / 2));
+        final int threads = 4;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            workers[t] = new Thread(() -> {
+                Map<Integer, Integer> batch = new HashMap<Integer, Integer>();
+                for (int i = 0; i < SIZE * 2; i++) {
+                    int key = (i * threads + offset) * 3;
+                    if (i % 2 == 0) {
+                        tree.insertOrUpdate(key, i);
+                    } else {
+                        batch.put(key, i);
+                    }
+                    if (batch.size() == 50) {
+                        tree.putAll(batch);
+                        batch.clear();
+                    }
+                }
+                tree.putAll(batch);
+            });
+            workers[t].start();
+        }
+        //写入期间移动边界
+        for (int i = 0; i < 5; i++) {
+            tree.rebalance();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        tree.rebalance();
+        int total = SIZE * 2 * threads;
+        assertEquals(total, tree.size());
+        List<Integer> boundaries = tree.getBoundaries();
+        for (int i = 1; i < boundaries.size(); i++) {
+            assertTrue(boundaries.get(i - 1) < boundaries.get(i), "分区边界无序:" + boundaries);
+        }
+        List<Map.Entry<Integer, Integer>> entries = tree.range(null, null);
+        assertEquals(total, entries.size());
+        for (int j = 0; j < total; j++) {
+            assertEquals(Integer.valueOf(j * 3), entries.get(j).getKey());
+            assertEquals(Integer.valueOf(j / threads), entries.get(j).getValue());
+            assertEquals(Integer.valueOf(j / threads), tree.get(j * 3), "得不到数据:" + j * 3);
+        }
+        assertEquals(SIZE, tree.range(SIZE * 3, SIZE * 6).size());
+        //区间为空或上下界颠倒且落在不同分区
+        assertTrue(tree.range(SIZE * 3, SIZE * 3).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> tree.range(SIZE * 20, 0));
+        assertEquals(3, tree.getAll(Arrays.asList(0, 1, 3, 6)).size());
+        assertEquals(Integer.valueOf(0), tree.remove(0));
+        assertNull(tree.get(0));
+        tree.close();
+    }
+
+    @Test
+    void testSnapshot() {
+        CopyOnWriteBPlusTree<Integer, Integer> tree = new CopyOnWriteBPlusTree<Integer, Integer>(4);
+        for (int i = 0; i < SIZE; i++) {
             tree.insertOrUpdate(i, i);
         }
-        long duration = System.currentTimeMillis() - current;
-        System.out.println("time elpsed for duration: " + duration);
-        tree.printBPlusTree();
+        try (CopyOnWriteBPlusTree.Snapshot<Integer, Integer> snapshot = tree.snapshot()) {
+            //快照之后的写入不影响快照
+            for (int i = 0; i < SIZE; i++) {
+                if (i % 2 == 0) {
+                    tree.remove(i);
+                } else {
+                    tree.insertOrUpdate(i, -i);
+                }
+            }
+            CopyOnWriteBPlusTree.Cursor<Integer, Integer> cursor = snapshot.scan(null, null);
+            int expected = 0;
+            while (cursor.next()) {
+                assertEquals(expected, cursor.getKey().intValue(), "快照数据错误");
+                assertEquals(expected, cursor.getValue().intValue(), "快照数据错误");
+                expected++;
+            }
+            assertEquals(SIZE, expected, "快照数据个数错误");
+            assertEquals(1, tree.openSnapshotCount());
+        }
+        assertEquals(SIZE / 2, tree.size());
+        assertEquals(0, tree.openSnapshotCount());
+        assertEquals(Integer.valueOf(-1), tree.get(1));
+        assertNull(tree.get(0));
     }
 
+    @Test
+    void testDiskReopen(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bplustree.db");
+        try (DiskBPlusTree<Long, Long> tree = new DiskBPlusTree<Long, Long>(file, 256, 8, Codec.LONG, Codec.LONG)) {
+            for (long i = 0; i < SIZE; i++) {
+                tree.insertOrUpdate(i, i);
+            }
+        }
+        try (DiskBPlusTree<Long, Long> tree = new DiskBPlusTree<Long, Long>(file, 256, 8, Codec.LONG, Codec.LONG)) {
+            for (long j = 0; j < SIZE; j++) {
+                assertEquals(Long.valueOf(j), tree.get(j), "得不到数据:" + j);
+            }
+            assertEquals(SIZE, tree.size());
+        }
+        //淘汰时已覆盖写回页面、还没有 flush 的文件不能打开
+        try (DiskBPlusTree<Long, Long> tree = new DiskBPlusTree<Long, Long>(file, 256, 8, Codec.LONG, Codec.LONG)) {
+            for (long i = 0; i < SIZE; i++) {
+                tree.insertOrUpdate(i, -i);
+            }
+            assertThrows(IOException.class, () -> new DiskBPlusTree<Long, Long>(file, 256, 8, Codec.LONG, Codec.LONG));
+            tree.flush();
+            try (DiskBPlusTree<Long, Long> reopened = new DiskBPlusTree<Long, Long>(file, 256, 8, Codec.LONG, Codec.LONG)) {
+                assertEquals(Long.valueOf(1 - SIZE), reopened.get(SIZE - 1L));
+            }
+        }
+    }
+
+    @Test
+    void testSaveAndLoad(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bplustree.bpt");
+        BPlusTree<Long, Long> tree = new BPlusTree<Long, Long>(16);
+        Map<Long, Long> expected = new TreeMap<Long, Long>();
+        Random random = new Random(13);
+        for (int i = 0; i < SIZE * 4; i++) {
+            long randomNumber = random.nextInt(SIZE * 10);
+            tree.insertOrUpdate(randomNumber, (long) i);
+            expected.put(randomNumber, (long) i);
+        }
+        assertEquals(expected.size(), tree.save(file, Codec.LONG, Codec.LONG));
+        BPlusTree<Long, Long> loaded = BPlusTree.load(file, 32, Codec.LONG, Codec.LONG);
+        BPlusTreeCursor<Long, Long> cursor = loaded.scan(null, null);
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertTrue(cursor.next(), "加载后缺少数据:" + entry.getKey());
+            assertEquals(entry.getKey(), cursor.getKey());
+            assertEquals(entry.getValue(), cursor.getValue());
+        }
+        assertFalse(cursor.next());
+        try (BPlusTreeFile.Reader<Long, Long> reader = new BPlusTreeFile.Reader<Long, Long>(file, Codec.LONG, Codec.LONG)) {
+            assertEquals(expected.size(), reader.size());
+            for (long key = -1; key <= SIZE * 10; key++) {
+                assertEquals(expected.get(key), reader.get(key), "直接读取数据错误:" + key);
+            }
+        }
+        //翻转第二个数据块 crc32 的一位：该块读取失败，之前缓存的数据块不受影响
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.read(buffer, 16);
+            long crcOffset = 16 + 12 + buffer.getInt(0) + 8;
+            buffer.clear();
+            channel.read(buffer, crcOffset);
+            buffer.putInt(0, buffer.getInt(0) ^ 1);
+            buffer.clear();
+            channel.write(buffer, crcOffset);
+        }
+        Long[] keys = expected.keySet().toArray(new Long[0]);
+        //每块 16KB / 16 字节 = 1024 个关键字
+        Long first = keys[0];
+        Long second = keys[1024];
+        try (BPlusTreeFile.Reader<Long, Long> reader = new BPlusTreeFile.Reader<Long, Long>(file, Codec.LONG, Codec.LONG)) {
+            assertEquals(expected.get(first), reader.get(first));
+            assertThrows(IOException.class, () -> reader.get(second));
+            assertEquals(expected.get(first), reader.get(first));
+            assertThrows(IOException.class, () -> reader.get(second));
+        }
+    }
+
+    @Test
+    void testDurableRecovery(@TempDir Path dir) throws IOException {
+        DurableBPlusTree<Long, Long> tree = new DurableBPlusTree<Long, Long>(dir, 4, Codec.LONG, Codec.LONG);
+        for (long i = 0; i < SIZE; i++) {
+            tree.insertOrUpdate(i, i);
+        }
+        tree.checkpoint();
+        for (long i = 0; i < SIZE; i += 2) {
+            tree.remove(i);
+        }
+        tree.close();
+        tree = new DurableBPlusTree<Long, Long>(dir, 4, Codec.LONG, Codec.LONG);
+        for (long j = 0; j < SIZE; j++) {
+            assertEquals(j % 2 == 0 ? null : Long.valueOf(j), tree.get(j), "恢复后数据错误:" + j);
+        }
+        tree.close();
+    }
+
+    @Test
+    void testDurableFailure(@TempDir Path dir) throws IOException {
+        //负数编码失败
+        Codec<Long> codec = new Codec<Long>() {
+            @Override
+            public int size() {
+                return Long.BYTES;
+            }
+
+            @Override
+            public void encode(ByteBuffer buffer, Long value) {
+                if (value < 0) {
+                    throw new IllegalArgumentException("negative value");
+                }
+                buffer.putLong(value);
+            }
+
+            @Override
+            public Long decode(ByteBuffer buffer) {
+                return buffer.getLong();
+            }
+        };
+        DurableBPlusTree<Long, Long> tree = new DurableBPlusTree<Long, Long>(dir, 4, Codec.LONG, codec);
+        tree.insertOrUpdate(1L, 1L);
+        assertThrows(IllegalArgumentException.class, () -> tree.insertOrUpdate(1L, -1L));
+        assertThrows(IllegalArgumentException.class, () -> tree.insertOrUpdate(2L, -2L));
+        assertEquals(Long.valueOf(1), tree.get(1L));
+        assertNull(tree.get(2L));
+        tree.insertOrUpdate(3L, 3L);
+        tree.close();
+        //关闭后刷盘失败：写入被撤销，之后的写入和检查点都被拒绝
+        assertThrows(IOException.class, () -> tree.insertOrUpdate(1L, 4L));
+        assertEquals(Long.valueOf(1), tree.get(1L));
+        assertThrows(IOException.class, () -> tree.remove(3L));
+        assertEquals(Long.valueOf(3), tree.get(3L));
+        assertThrows(IOException.class, tree::checkpoint);
+        DurableBPlusTree<Long, Long> reopened = new DurableBPlusTree<Long, Long>(dir, 4, Codec.LONG, codec);
+        assertEquals(Long.valueOf(1), reopened.get(1L));
+        assertNull(reopened.get(2L));
+        assertEquals(Long.valueOf(3), reopened.get(3L), "编码失败的记录截断了之后的日志");
+        reopened.close();
+    }
+
+    // 升序扫描的结果、逐个查找的结果都与 expected 一致
+    private static long sum(Map<Integer, Integer> map) {
+        long sum = 0;
+        for (int value : map.values()) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static void assertContentEquals(Map<Integer, Integer> expected, BPlusTree<Integer, Integer> tree) {
+        BPlusTreeCursor<Integer, Integer> cursor = tree.scan(null, null);
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertTrue(cursor.next(), "扫描缺少数据:" + entry.getKey());
+            assertEquals(entry.getKey(), cursor.getKey());
+            assertEquals(entry.getValue(), cursor.getValue());
+            assertEquals(entry.getValue(), tree.get(entry.getKey()), "得不到数据:" + entry.getKey());
+        }
+        assertFalse(cursor.next(), "扫描多出数据");
+        assertEquals(expected.size(), tree.size(), "子树计数错误");
+    }
 }
@@ -0,0 +1,98 @@
+package com.example.demo;
+
+import com.example.demo.structure.tree.MyRedBlackTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @ClassName MyRedBlackTreeTest
+ * @Description: 红黑树查找与有序遍历的正确性测试，以 TreeMap 为参照
+ * @Author agent
+ * @Date 2026/10/17
+ **/
+class MyRedBlackTreeTest {
+
+    private static final int SIZE = 2000;
+
+    @Test
+    void testNavigation() {
+        MyRedBlackTree<Integer, Integer> tree = new MyRedBlackTree<Integer, Integer>();
+        TreeMap<Integer, Integer> expected = new TreeMap<Integer, Integer>();
+        assertTrue(tree.isEmpty());
+        assertThrows(NoSuchElementException.class, tree::firstKey);
+        Random random = new Random(1);
+        for (int i = 0; i < SIZE * 4; i++) {
+            int key = random.nextInt(SIZE * 2) * 2;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), tree.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), tree.put(key, i));
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        assertEquals(expected.firstKey(), tree.firstKey());
+        assertEquals(expected.lastKey(), tree.lastKey());
+        for (int key = -1; key <= SIZE * 4 + 1; key++) {
+            assertEquals(expected.get(key), tree.get(key));
+            assertEquals(expected.containsKey(key), tree.containsKey(key));
+            assertEquals(expected.floorKey(key), tree.floorKey(key));
+            assertEquals(expected.ceilingKey(key), tree.ceilingKey(key));
+            assertEquals(expected.lowerKey(key), tree.lowerKey(key));
+            assertEquals(expected.higherKey(key), tree.higherKey(key));
+        }
+        for (int i = 0; i < 100; i++) {
+            Integer from = i == 0 ? null : random.nextInt(SIZE * 4);
+            Integer to = i == 1 ? null : (from == null ? 0 : from) + random.nextInt(SIZE);
+            Map<Integer, Integer> range = from == null ? expected.headMap(to) : to == null ? expected.tailMap(from) : expected.subMap(from, to);
+            List<Integer> keys = new ArrayList<Integer>();
+            MyRedBlackTree<Integer, Integer>.Cursor cursor = tree.cursor(from, to);
+            while (cursor.next()) {
+                keys.add(cursor.getKey());
+                assertEquals(range.get(cursor.getKey()), cursor.getValue());
+            }
+            assertEquals(new ArrayList<Integer>(range.keySet()), keys);
+            keys.clear();
+            for (cursor = tree.descendingCursor(from, to); cursor.next(); ) {
+                keys.add(0, cursor.getKey());
+            }
+            assertEquals(new ArrayList<Integer>(range.keySet()), keys);
+            Map<Integer, Integer> view = tree.subMap(from, to);
+            assertEquals(range, view);
+            assertEquals(range.size(), view.size());
+        }
+    }
+
+    @Test
+    void testCursorFailFast() {
+        MyRedBlackTree<String, Integer> tree = new MyRedBlackTree<String, Integer>(Comparator.reverseOrder());
+        for (int i = 0; i < 10; i++) {
+            tree.put("k" + i, i);
+        }
+        assertEquals("k9", tree.firstKey());
+        MyRedBlackTree<String, Integer>.Cursor cursor = tree.cursor(null, null);
+        assertThrows(NoSuchElementException.class, cursor::getKey);
+        assertTrue(cursor.next());
+        assertEquals("k9", cursor.getKey());
+        tree.put("k9", 99);
+        assertTrue(cursor.next());
+        tree.remove("k0");
+        assertThrows(ConcurrentModificationException.class, cursor::next);
+        assertFalse(tree.cursor("k3", "k3").next());
+        assertNull(tree.subMap("k5", "k2").get("k1"));
+        assertEquals(Integer.valueOf(99), tree.subMap("k9", "k5").get("k9"));
+    }
+}